@@ -0,0 +1,199 @@
+package com.gerenvip.expan.list;
+
+import android.database.DataSetObserver;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ExpandableListAdapter;
+import android.widget.ExpandableListView;
+import android.widget.FrameLayout;
+import android.widget.HeterogeneousExpandableList;
+
+/**
+ * 把{@link ExpandableListAdapter}(分组/子条目模型)转换成RecyclerView的adapter
+ * 1.通过{@link ExpandablePositionMapper}把扁平位置映射到分组/子条目
+ * 2.每个条目用一个FrameLayout承载原adapter返回的view，绑定时把它作为convertView交回原adapter复用，
+ * 所以要求原adapter在getGroupView/getChildView中复用convertView
+ * 3.展开、收起只通知变化的区间，配合稳定id，RecyclerView可以为插入/删除的子条目做动画
+ */
+class ExpandableRecyclerAdapter extends RecyclerView.Adapter<ExpandableRecyclerAdapter.Holder> {
+
+    interface OnItemClickListener {
+        /**
+         * @param itemView       条目的容器view
+         * @param packedPosition 被点击条目的packed position
+         */
+        public void onItemClick(View itemView, long packedPosition);
+    }
+
+    private final ExpandableListAdapter mAdapter;
+    private final ExpandablePositionMapper mMapper = new ExpandablePositionMapper();
+    private final int mGroupTypeCount;
+    private OnItemClickListener mItemClickListener;
+
+    private final DataSetObserver mObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mMapper.onDataChanged();
+            //有稳定id时RecyclerView按id匹配新旧条目，仍然可以做动画
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            onChanged();
+        }
+    };
+
+    private final View.OnClickListener mClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            Holder holder = (Holder) v.getTag();
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || mItemClickListener == null) {
+                return;
+            }
+            mItemClickListener.onItemClick(v, mMapper.getPackedPosition(position));
+        }
+    };
+
+    ExpandableRecyclerAdapter(ExpandableListAdapter adapter) {
+        mAdapter = adapter;
+        mMapper.setAdapter(adapter);
+        mGroupTypeCount = adapter instanceof HeterogeneousExpandableList
+                ? ((HeterogeneousExpandableList) adapter).getGroupTypeCount() : 1;
+        setHasStableIds(adapter.hasStableIds());
+        adapter.registerDataSetObserver(mObserver);
+    }
+
+    ExpandableListAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    ExpandablePositionMapper getMapper() {
+        return mMapper;
+    }
+
+    void setOnItemClickListener(OnItemClickListener listener) {
+        mItemClickListener = listener;
+    }
+
+    /**
+     * 不再使用时调用，解除对原adapter的监听
+     */
+    void release() {
+        mAdapter.unregisterDataSetObserver(mObserver);
+    }
+
+    /**
+     * @return 子条目的view类型个数，子条目的类型排在分组类型之后
+     */
+    int getChildTypeCount() {
+        return mAdapter instanceof HeterogeneousExpandableList
+                ? ((HeterogeneousExpandableList) mAdapter).getChildTypeCount() : 1;
+    }
+
+    int getGroupTypeCount() {
+        return mGroupTypeCount;
+    }
+
+    boolean expandGroup(int groupPosition) {
+        if (!mMapper.setExpanded(groupPosition, true)) {
+            return false;
+        }
+        int groupFlatPos = mMapper.getGroupFlatPosition(groupPosition);
+        //group条目的展开标记也需要重新绑定
+        notifyItemChanged(groupFlatPos);
+        notifyItemRangeInserted(groupFlatPos + 1, mAdapter.getChildrenCount(groupPosition));
+        mAdapter.onGroupExpanded(groupPosition);
+        return true;
+    }
+
+    boolean collapseGroup(int groupPosition) {
+        if (!mMapper.setExpanded(groupPosition, false)) {
+            return false;
+        }
+        int groupFlatPos = mMapper.getGroupFlatPosition(groupPosition);
+        notifyItemChanged(groupFlatPos);
+        notifyItemRangeRemoved(groupFlatPos + 1, mAdapter.getChildrenCount(groupPosition));
+        mAdapter.onGroupCollapsed(groupPosition);
+        return true;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mMapper.getFlatCount();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        long packed = mMapper.getPackedPosition(position);
+        int group = ExpandableListView.getPackedPositionGroup(packed);
+        if (ExpandableListView.getPackedPositionType(packed) == ExpandableListView.PACKED_POSITION_TYPE_GROUP) {
+            return getGroupType(group);
+        }
+        int child = ExpandableListView.getPackedPositionChild(packed);
+        return mGroupTypeCount + (mAdapter instanceof HeterogeneousExpandableList
+                ? ((HeterogeneousExpandableList) mAdapter).getChildType(group, child) : 0);
+    }
+
+    /**
+     * @param groupPosition
+     * @return 分组的view类型，与悬停header的类型一致
+     */
+    int getGroupType(int groupPosition) {
+        return mAdapter instanceof HeterogeneousExpandableList
+                ? ((HeterogeneousExpandableList) mAdapter).getGroupType(groupPosition) : 0;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        long packed = mMapper.getPackedPosition(position);
+        int group = ExpandableListView.getPackedPositionGroup(packed);
+        long groupId = mAdapter.getGroupId(group);
+        if (ExpandableListView.getPackedPositionType(packed) == ExpandableListView.PACKED_POSITION_TYPE_GROUP) {
+            return mAdapter.getCombinedGroupId(groupId);
+        }
+        long childId = mAdapter.getChildId(group, ExpandableListView.getPackedPositionChild(packed));
+        return mAdapter.getCombinedChildId(groupId, childId);
+    }
+
+    @Override
+    public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+        FrameLayout container = new FrameLayout(parent.getContext());
+        container.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        Holder holder = new Holder(container);
+        container.setTag(holder);
+        container.setOnClickListener(mClickListener);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position) {
+        FrameLayout container = (FrameLayout) holder.itemView;
+        View convertView = container.getChildCount() > 0 ? container.getChildAt(0) : null;
+        long packed = mMapper.getPackedPosition(position);
+        int group = ExpandableListView.getPackedPositionGroup(packed);
+        View view;
+        if (ExpandableListView.getPackedPositionType(packed) == ExpandableListView.PACKED_POSITION_TYPE_GROUP) {
+            view = mAdapter.getGroupView(group, mMapper.isExpanded(group), convertView, container);
+        } else {
+            int child = ExpandableListView.getPackedPositionChild(packed);
+            boolean isLastChild = child == mAdapter.getChildrenCount(group) - 1;
+            view = mAdapter.getChildView(group, child, isLastChild, convertView, container);
+        }
+        if (view != convertView) {
+            container.removeAllViews();
+            ViewGroup.LayoutParams lp = view.getLayoutParams();
+            int height = lp != null ? lp.height : ViewGroup.LayoutParams.WRAP_CONTENT;
+            container.addView(view, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, height));
+        }
+    }
+
+    static class Holder extends RecyclerView.ViewHolder {
+        Holder(View itemView) {
+            super(itemView);
+        }
+    }
+}
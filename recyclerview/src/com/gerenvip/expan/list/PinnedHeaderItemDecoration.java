@@ -0,0 +1,216 @@
+package com.gerenvip.expan.list;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ExpandableListView;
+
+/**
+ * {@link PinnedHeaderRecyclerView}的悬停header，与{@link PinnedHeaderExpandableListView}使用同一个
+ * {@link PinnedHeaderExpandableListView.OnHeaderUpdateListener}
+ * 1.header的位置只在滑动和布局之后计算({@link #refresh(RecyclerView)})，onDrawOver只负责绘制
+ * 2.header没有parent，测量结果按宽度和header类型缓存，滑动时不会重新测量
+ * 3.点击header上可点击的子view时交给它处理，点击其他区域时展开/收起该组
+ */
+class PinnedHeaderItemDecoration extends RecyclerView.ItemDecoration implements RecyclerView.OnItemTouchListener {
+
+    private final PinnedHeaderRecyclerView mParent;
+    private PinnedHeaderExpandableListView.OnHeaderUpdateListener mListener;
+    private View mHeaderView;
+    private int mHeaderGroupPos = RecyclerView.NO_POSITION;
+    //header被下一组推上去的距离，<=0
+    private int mHeaderOffset;
+
+    private boolean mHeaderMeasured = false;
+    private int mHeaderParentWidth;
+    private int mHeaderViewType;
+
+    private View mTouchTarget;
+    private boolean mActionDownHappened = false;
+    private final Rect mTempRect = new Rect();
+
+    PinnedHeaderItemDecoration(PinnedHeaderRecyclerView parent) {
+        mParent = parent;
+    }
+
+    void setOnHeaderUpdateListener(PinnedHeaderExpandableListView.OnHeaderUpdateListener listener) {
+        mListener = listener;
+        mHeaderView = listener == null ? null : listener.getPinnedHeader();
+        mHeaderGroupPos = RecyclerView.NO_POSITION;
+        mHeaderMeasured = false;
+        mTouchTarget = null;
+        refresh(mParent);
+    }
+
+    /**
+     * 换了adapter，header需要重新绑定
+     */
+    void onAdapterChanged() {
+        mHeaderGroupPos = RecyclerView.NO_POSITION;
+        mTouchTarget = null;
+    }
+
+    View getHeaderView() {
+        return mHeaderView;
+    }
+
+    int getHeaderGroupPosition() {
+        return mHeaderGroupPos;
+    }
+
+    /**
+     * header内容变化，可能改变大小时调用，下一次refresh时重新测量
+     */
+    void invalidateMeasure() {
+        mHeaderMeasured = false;
+    }
+
+    /**
+     * 根据第一个可见条目刷新header显示的组和被推上去的距离，在滑动和布局之后调用
+     *
+     * @param parent
+     */
+    void refresh(RecyclerView parent) {
+        ExpandableRecyclerAdapter adapter = mParent.getRecyclerAdapter();
+        if (mHeaderView == null || adapter == null || parent.getChildCount() == 0) {
+            return;
+        }
+        LinearLayoutManager lm = (LinearLayoutManager) parent.getLayoutManager();
+        int first = lm.findFirstVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        ExpandablePositionMapper mapper = adapter.getMapper();
+        int group = ExpandableListView.getPackedPositionGroup(mapper.getPackedPosition(first));
+        if (group != mHeaderGroupPos) {
+            mHeaderGroupPos = group;
+            mListener.updatePinnedHeader(mHeaderView, group);
+        }
+        measureHeader(parent, adapter.getGroupType(group));
+
+        //下一组的group条目到达header底部时，把header推上去
+        mHeaderOffset = 0;
+        int headerHeight = mHeaderView.getMeasuredHeight();
+        if (group + 1 < adapter.getAdapter().getGroupCount()) {
+            View next = lm.findViewByPosition(mapper.getGroupFlatPosition(group + 1));
+            if (next != null) {
+                int top = lm.getDecoratedTop(next);
+                if (top <= headerHeight) {
+                    mHeaderOffset = Math.max(top - headerHeight, -headerHeight);
+                }
+            }
+        }
+        int left = parent.getPaddingLeft();
+        mHeaderView.layout(left, mHeaderOffset, left + mHeaderView.getMeasuredWidth(), mHeaderOffset + headerHeight);
+    }
+
+    /**
+     * header的大小只和宽度以及header类型有关，都没有变化，并且header自己没有请求布局时，直接使用上次的结果
+     */
+    private void measureHeader(RecyclerView parent, int viewType) {
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        if (mHeaderMeasured && width == mHeaderParentWidth && viewType == mHeaderViewType
+                && !mHeaderView.isLayoutRequested()) {
+            return;
+        }
+        ViewGroup.LayoutParams lp = mHeaderView.getLayoutParams();
+        int height = lp != null ? lp.height : ViewGroup.LayoutParams.WRAP_CONTENT;
+        int heightSpec = height >= 0 ? View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY)
+                : View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        mHeaderView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY), heightSpec);
+        mHeaderParentWidth = width;
+        mHeaderViewType = viewType;
+        mHeaderMeasured = true;
+    }
+
+    private boolean isHeaderShown() {
+        return mHeaderView != null && mHeaderGroupPos != RecyclerView.NO_POSITION && mHeaderMeasured;
+    }
+
+    @Override
+    public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
+        if (!isHeaderShown()) {
+            return;
+        }
+        int saveCount = c.save();
+        c.translate(mHeaderView.getLeft(), mHeaderView.getTop());
+        c.clipRect(0, 0, mHeaderView.getWidth(), mHeaderView.getHeight());
+        mHeaderView.draw(c);
+        c.restoreToCount(saveCount);
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(RecyclerView rv, MotionEvent e) {
+        if (e.getAction() != MotionEvent.ACTION_DOWN) {
+            return mActionDownHappened;
+        }
+        mActionDownHappened = isHeaderShown() && isInHeader((int) e.getX(), (int) e.getY());
+        if (mActionDownHappened) {
+            mTouchTarget = getTouchTarget(mHeaderView, (int) e.getX() - mHeaderView.getLeft(),
+                    (int) e.getY() - mHeaderView.getTop());
+        }
+        return mActionDownHappened;
+    }
+
+    @Override
+    public void onTouchEvent(RecyclerView rv, MotionEvent e) {
+        int action = e.getAction();
+        if (action == MotionEvent.ACTION_UP) {
+            mActionDownHappened = false;
+            if (!isInHeader((int) e.getX(), (int) e.getY())) {
+                return;
+            }
+            if (mTouchTarget != null && mTouchTarget != mHeaderView && mTouchTarget.isClickable()) {
+                mTouchTarget.performClick();
+            } else if (mParent.isGroupExpanded(mHeaderGroupPos)) {
+                //收起后该组的group条目可能已经滑出屏幕，滚动回它的位置
+                mParent.collapseGroup(mHeaderGroupPos);
+                mParent.scrollToPosition(mParent.getRecyclerAdapter().getMapper().getGroupFlatPosition(mHeaderGroupPos));
+            } else {
+                mParent.expandGroup(mHeaderGroupPos);
+            }
+        } else if (action == MotionEvent.ACTION_CANCEL) {
+            mActionDownHappened = false;
+        }
+    }
+
+    @Override
+    public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+    }
+
+    private boolean isInHeader(int x, int y) {
+        return x >= mHeaderView.getLeft() && x < mHeaderView.getRight()
+                && y >= mHeaderView.getTop() && y < mHeaderView.getBottom();
+    }
+
+    /**
+     * @param view
+     * @param x    相对view的坐标
+     * @param y
+     * @return 坐标所在的最深一层可点击的子view，没有时返回view本身
+     */
+    private View getTouchTarget(View view, int x, int y) {
+        if (!(view instanceof ViewGroup)) {
+            return view;
+        }
+        ViewGroup group = (ViewGroup) view;
+        for (int i = group.getChildCount() - 1; i >= 0; i--) {
+            View child = group.getChildAt(i);
+            if (child.getVisibility() != View.VISIBLE) {
+                continue;
+            }
+            child.getHitRect(mTempRect);
+            if (mTempRect.contains(x, y)) {
+                View target = getTouchTarget(child, x - child.getLeft(), y - child.getTop());
+                if (target.isClickable()) {
+                    return target;
+                }
+            }
+        }
+        return view;
+    }
+}
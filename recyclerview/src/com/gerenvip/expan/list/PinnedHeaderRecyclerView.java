@@ -0,0 +1,253 @@
+package com.gerenvip.expan.list;
+
+import android.content.Context;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ExpandableListAdapter;
+import android.widget.ExpandableListView;
+
+/**
+ * 基于RecyclerView的悬停header分组列表，与{@link PinnedHeaderExpandableListView}使用相同的
+ * {@link ExpandableListAdapter}和{@link PinnedHeaderExpandableListView.OnHeaderUpdateListener}
+ * 宿主代码需要改写：这里不是ExpandableListView，点击回调使用本类的{@link OnGroupClickListener}/{@link OnChildClickListener}
+ * (parent参数的类型不同，不能直接传入ExpandableListView的listener)，
+ * 也没有setImageLoader、setSelectionModel、isFastBinding等方法，例如MyActivity不能不经修改直接换过来
+ * 相比ExpandableListView：
+ * 1.每种view类型有自己的回收池，子条目的回收池可以单独调大({@link #setChildRecycledViewCount(int)})
+ * 2.API 21以上滑动时由GapWorker在帧间空闲时间预取后面的子条目({@link #setChildPrefetchCount(int)})
+ * 3.展开/收起只通知变化的区间，adapter有稳定id时数据刷新也有条目动画
+ * 暂不支持：悬停footer、子条目多列、快速滑动时的简化绑定、{@link SelectionModel}
+ * 依赖recyclerview-v7 25.1.0以上，源码不在主工程中，见recyclerview/build.xml
+ */
+public class PinnedHeaderRecyclerView extends RecyclerView {
+
+    public interface OnGroupClickListener {
+        /**
+         * @return true表示已经处理了点击，不再展开/收起该组
+         */
+        public boolean onGroupClick(PinnedHeaderRecyclerView parent, View v, int groupPosition, long id);
+    }
+
+    public interface OnChildClickListener {
+        public boolean onChildClick(PinnedHeaderRecyclerView parent, View v, int groupPosition, int childPosition, long id);
+    }
+
+    //RecyclerView默认每种类型缓存5个，子条目通常成批出现，默认调大一些
+    private static final int DEFAULT_CHILD_RECYCLED_VIEW_COUNT = 10;
+    private static final int DEFAULT_CHILD_PREFETCH_COUNT = 2;
+
+    private ExpandableRecyclerAdapter mRecyclerAdapter;
+    private final PinnedHeaderItemDecoration mHeaderDecoration = new PinnedHeaderItemDecoration(this);
+    private OnGroupClickListener mGroupClickListener;
+    private OnChildClickListener mChildClickListener;
+    private int mChildRecycledViewCount = DEFAULT_CHILD_RECYCLED_VIEW_COUNT;
+    private int mChildPrefetchCount = DEFAULT_CHILD_PREFETCH_COUNT;
+
+    private final ExpandableRecyclerAdapter.OnItemClickListener mItemClickListener = new ExpandableRecyclerAdapter.OnItemClickListener() {
+        @Override
+        public void onItemClick(View itemView, long packedPosition) {
+            int groupPosition = ExpandableListView.getPackedPositionGroup(packedPosition);
+            ExpandableListAdapter adapter = mRecyclerAdapter.getAdapter();
+            //回调中传入adapter返回的view，与ExpandableListView一致
+            View v = ((ViewGroup) itemView).getChildAt(0);
+            if (ExpandableListView.getPackedPositionType(packedPosition) == ExpandableListView.PACKED_POSITION_TYPE_CHILD) {
+                int childPosition = ExpandableListView.getPackedPositionChild(packedPosition);
+                if (mChildClickListener != null) {
+                    mChildClickListener.onChildClick(PinnedHeaderRecyclerView.this, v, groupPosition, childPosition,
+                            adapter.getChildId(groupPosition, childPosition));
+                }
+                return;
+            }
+            if (mGroupClickListener != null && mGroupClickListener.onGroupClick(PinnedHeaderRecyclerView.this, v,
+                    groupPosition, adapter.getGroupId(groupPosition))) {
+                return;
+            }
+            if (isGroupExpanded(groupPosition)) {
+                collapseGroup(groupPosition);
+            } else {
+                expandGroup(groupPosition);
+            }
+        }
+    };
+
+    public PinnedHeaderRecyclerView(Context context) {
+        super(context);
+        initViews(context);
+    }
+
+    public PinnedHeaderRecyclerView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        initViews(context);
+    }
+
+    public PinnedHeaderRecyclerView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        initViews(context);
+    }
+
+    private void initViews(Context context) {
+        setLayoutManager(new PrefetchLayoutManager(context));
+        addItemDecoration(mHeaderDecoration);
+        addOnItemTouchListener(mHeaderDecoration);
+        addOnScrollListener(new OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                mHeaderDecoration.refresh(recyclerView);
+            }
+        });
+    }
+
+    public void setAdapter(ExpandableListAdapter adapter) {
+        if (mRecyclerAdapter != null) {
+            mRecyclerAdapter.release();
+        }
+        mRecyclerAdapter = adapter == null ? null : new ExpandableRecyclerAdapter(adapter);
+        if (mRecyclerAdapter != null) {
+            mRecyclerAdapter.setOnItemClickListener(mItemClickListener);
+            applyChildRecycledViewCount();
+        }
+        super.setAdapter(mRecyclerAdapter);
+        mHeaderDecoration.onAdapterChanged();
+    }
+
+    public ExpandableListAdapter getExpandableListAdapter() {
+        return mRecyclerAdapter == null ? null : mRecyclerAdapter.getAdapter();
+    }
+
+    ExpandableRecyclerAdapter getRecyclerAdapter() {
+        return mRecyclerAdapter;
+    }
+
+    public void setOnHeaderUpdateListener(PinnedHeaderExpandableListView.OnHeaderUpdateListener listener) {
+        mHeaderDecoration.setOnHeaderUpdateListener(listener);
+        invalidate();
+    }
+
+    public void setOnGroupClickListener(OnGroupClickListener listener) {
+        mGroupClickListener = listener;
+    }
+
+    public void setOnChildClickListener(OnChildClickListener listener) {
+        mChildClickListener = listener;
+    }
+
+    public boolean expandGroup(int groupPosition) {
+        return mRecyclerAdapter != null && mRecyclerAdapter.expandGroup(groupPosition);
+    }
+
+    public boolean collapseGroup(int groupPosition) {
+        return mRecyclerAdapter != null && mRecyclerAdapter.collapseGroup(groupPosition);
+    }
+
+    public boolean isGroupExpanded(int groupPosition) {
+        return mRecyclerAdapter != null && mRecyclerAdapter.getMapper().isExpanded(groupPosition);
+    }
+
+    /**
+     * @param flatListPosition adapter中的位置
+     * @return 与{@link ExpandableListView#getExpandableListPosition(int)}格式相同的packed position
+     */
+    public long getExpandableListPosition(int flatListPosition) {
+        return mRecyclerAdapter == null ? ExpandableListView.PACKED_POSITION_VALUE_NULL
+                : mRecyclerAdapter.getMapper().getPackedPosition(flatListPosition);
+    }
+
+    /**
+     * @param packedPosition
+     * @return adapter中的位置，所在的组没有展开时返回{@link #NO_POSITION}
+     */
+    public int getFlatListPosition(long packedPosition) {
+        return mRecyclerAdapter == null ? NO_POSITION : mRecyclerAdapter.getMapper().getFlatPosition(packedPosition);
+    }
+
+    /**
+     * 设置每种子条目类型的回收池大小
+     *
+     * @param count
+     */
+    public void setChildRecycledViewCount(int count) {
+        mChildRecycledViewCount = count;
+        applyChildRecycledViewCount();
+    }
+
+    private void applyChildRecycledViewCount() {
+        if (mRecyclerAdapter == null) {
+            return;
+        }
+        RecycledViewPool pool = getRecycledViewPool();
+        int groupTypeCount = mRecyclerAdapter.getGroupTypeCount();
+        for (int i = 0; i < mRecyclerAdapter.getChildTypeCount(); i++) {
+            pool.setMaxRecycledViews(groupTypeCount + i, mChildRecycledViewCount);
+        }
+    }
+
+    /**
+     * 设置向下滑动时除了下一个条目之外额外预取的条目个数，只在API 21以上(GapWorker)生效，0表示只预取下一个
+     *
+     * @param count
+     */
+    public void setChildPrefetchCount(int count) {
+        mChildPrefetchCount = Math.max(0, count);
+    }
+
+    /**
+     * header内容变化，可能影响header的大小时调用
+     */
+    public void notifyPinnedHeaderChanged() {
+        mHeaderDecoration.invalidateMeasure();
+        mHeaderDecoration.refresh(this);
+        invalidatePinnedHeader();
+    }
+
+    /**
+     * header没有parent，内容变化(例如异步加载的图片)后调用此方法，只重绘header所在的区域
+     */
+    public void invalidatePinnedHeader() {
+        View header = mHeaderDecoration.getHeaderView();
+        if (header != null) {
+            invalidate(header.getLeft(), Math.max(header.getTop(), 0), header.getRight(), header.getBottom());
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        mHeaderDecoration.refresh(this);
+    }
+
+    /**
+     * GapWorker只预取紧接着的下一个条目，展开的组中子条目一行很矮，一帧可能滑过好几个，
+     * 所以向下滑动时额外登记后面的子条目，距离越远优先级越低
+     */
+    private class PrefetchLayoutManager extends LinearLayoutManager {
+
+        PrefetchLayoutManager(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void collectAdjacentPrefetchPositions(int dx, int dy, State state, LayoutPrefetchRegistry layoutPrefetchRegistry) {
+            super.collectAdjacentPrefetchPositions(dx, dy, state, layoutPrefetchRegistry);
+            if (dy <= 0 || getChildCount() == 0 || mRecyclerAdapter == null) {
+                return;
+            }
+            View last = getChildAt(getChildCount() - 1);
+            int lastPos = getPosition(last);
+            //下一个条目已经由super登记
+            int distance = Math.max(0, getDecoratedBottom(last) - (getHeight() - getPaddingBottom()));
+            int itemCount = state.getItemCount();
+            for (int i = 2; i <= mChildPrefetchCount + 1 && lastPos + i < itemCount; i++) {
+                int pos = lastPos + i;
+                if (ExpandableListView.getPackedPositionType(getExpandableListPosition(pos))
+                        != ExpandableListView.PACKED_POSITION_TYPE_CHILD) {
+                    break;
+                }
+                //子条目高度未知，用上一个条目的高度估计距离
+                layoutPrefetchRegistry.addPosition(pos, distance + (i - 1) * last.getHeight());
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.gerenvip.expan.list;
+
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseExpandableListAdapter;
+import android.widget.ExpandableListAdapter;
+import android.widget.HeterogeneousExpandableList;
+import android.widget.LinearLayout;
+
+/**
+ * 把一个组里的每N个子条目打包成一行(组内网格)的adapter
+ * group相关的方法原样转发，child相关的方法中childPosition表示的是行号，
+ * 第row行包含原adapter中[row * N, row * N + N)的子条目
+ * 要求原adapter所有子条目使用同一种view类型
+ */
+class ColumnPackingAdapter extends BaseExpandableListAdapter {
+
+    private final ExpandableListAdapter mAdapter;
+    private int mColumnCount;
+
+    //原adapter数据变化时，通知注册在当前adapter上的观察者
+    private final DataSetObserver mObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public void onInvalidated() {
+            notifyDataSetInvalidated();
+        }
+    };
+
+    ColumnPackingAdapter(ExpandableListAdapter adapter, int columnCount) {
+        mAdapter = adapter;
+        mColumnCount = columnCount;
+        mAdapter.registerDataSetObserver(mObserver);
+    }
+
+    ExpandableListAdapter getAdapter() {
+        return mAdapter;
+    }
+
+    int getColumnCount() {
+        return mColumnCount;
+    }
+
+    void setColumnCount(int columnCount) {
+        if (mColumnCount == columnCount) {
+            return;
+        }
+        mColumnCount = columnCount;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 不再使用时调用，解除对原adapter的监听
+     */
+    void release() {
+        mAdapter.unregisterDataSetObserver(mObserver);
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return 原adapter中的子条目位置
+     */
+    int getChildPosition(int row, int column) {
+        return row * mColumnCount + column;
+    }
+
+    @Override
+    public int getGroupCount() {
+        return mAdapter.getGroupCount();
+    }
+
+    @Override
+    public int getChildrenCount(int groupPosition) {
+        //向上取整，最后一行可能不满
+        return (mAdapter.getChildrenCount(groupPosition) + mColumnCount - 1) / mColumnCount;
+    }
+
+    @Override
+    public Object getGroup(int groupPosition) {
+        return mAdapter.getGroup(groupPosition);
+    }
+
+    @Override
+    public Object getChild(int groupPosition, int childPosition) {
+        return mAdapter.getChild(groupPosition, getChildPosition(childPosition, 0));
+    }
+
+    @Override
+    public long getGroupId(int groupPosition) {
+        return mAdapter.getGroupId(groupPosition);
+    }
+
+    @Override
+    public long getChildId(int groupPosition, int childPosition) {
+        //每一行使用该行第一个子条目的id
+        return mAdapter.getChildId(groupPosition, getChildPosition(childPosition, 0));
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return mAdapter.hasStableIds();
+    }
+
+    @Override
+    public int getGroupTypeCount() {
+        if (mAdapter instanceof HeterogeneousExpandableList) {
+            return ((HeterogeneousExpandableList) mAdapter).getGroupTypeCount();
+        }
+        return super.getGroupTypeCount();
+    }
+
+    @Override
+    public int getGroupType(int groupPosition) {
+        if (mAdapter instanceof HeterogeneousExpandableList) {
+            return ((HeterogeneousExpandableList) mAdapter).getGroupType(groupPosition);
+        }
+        return super.getGroupType(groupPosition);
+    }
+
+    @Override
+    public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+        return mAdapter.getGroupView(groupPosition, isExpanded, convertView, parent);
+    }
+
+    @Override
+    public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+        LinearLayout row;
+        if (convertView instanceof LinearLayout && ((LinearLayout) convertView).getChildCount() == mColumnCount) {
+            row = (LinearLayout) convertView;
+        } else {
+            row = new LinearLayout(parent.getContext());
+            row.setOrientation(LinearLayout.HORIZONTAL);
+            row.setWeightSum(mColumnCount);
+        }
+
+        int childrenCount = mAdapter.getChildrenCount(groupPosition);
+        for (int column = 0; column < mColumnCount; column++) {
+            int position = getChildPosition(childPosition, column);
+            View cell = column < row.getChildCount() ? row.getChildAt(column) : null;
+            if (position >= childrenCount) {
+                //最后一行不满时用占位view补齐，保证每一行都有N个格子，下次可以复用
+                if (cell == null) {
+                    cell = new CellPlaceholder(row);
+                    row.addView(cell, column, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1));
+                }
+                cell.setVisibility(View.INVISIBLE);
+                continue;
+            }
+            //占位view不是原adapter创建的，不能交给它复用
+            View convert = cell instanceof CellPlaceholder ? null : cell;
+            View view = mAdapter.getChildView(groupPosition, position, position == childrenCount - 1, convert, row);
+            if (view != cell) {
+                if (cell != null) {
+                    row.removeViewAt(column);
+                }
+                row.addView(view, column, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.WRAP_CONTENT, 1));
+            }
+            view.setVisibility(View.VISIBLE);
+        }
+        return row;
+    }
+
+    /**
+     * @param cell
+     * @return 是否是最后一行补齐用的空格子
+     */
+    static boolean isPlaceholder(View cell) {
+        return cell instanceof CellPlaceholder;
+    }
+
+    @Override
+    public boolean isChildSelectable(int groupPosition, int childPosition) {
+        return mAdapter.isChildSelectable(groupPosition, getChildPosition(childPosition, 0));
+    }
+
+    @Override
+    public void onGroupExpanded(int groupPosition) {
+        mAdapter.onGroupExpanded(groupPosition);
+    }
+
+    @Override
+    public void onGroupCollapsed(int groupPosition) {
+        mAdapter.onGroupCollapsed(groupPosition);
+    }
+
+    /**
+     * 最后一行不满时补齐的空格子
+     */
+    private static class CellPlaceholder extends View {
+        CellPlaceholder(ViewGroup parent) {
+            super(parent.getContext());
+        }
+    }
+}
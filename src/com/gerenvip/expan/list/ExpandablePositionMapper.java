@@ -0,0 +1,154 @@
+package com.gerenvip.expan.list;
+
+import android.widget.ExpandableListAdapter;
+import android.widget.ExpandableListView;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 分组/子条目位置与扁平位置之间的映射，RecyclerView引擎使用
+ * 记录每一组的group条目在扁平列表中的位置，扁平位置 -> 分组位置用二分查找，O(log 组数)
+ * packed position的格式与{@link ExpandableListView}相同，可以直接使用它的静态方法解析
+ */
+class ExpandablePositionMapper {
+
+    private ExpandableListAdapter mAdapter;
+    //每一组的group条目在扁平列表中的位置
+    private int[] mGroupFlatPos = new int[0];
+    private boolean[] mExpanded = new boolean[0];
+    //展开的组的id，adapter有稳定id时数据变化后按id恢复展开状态
+    private final Set<Long> mExpandedIds = new HashSet<Long>();
+    private int mFlatCount;
+
+    void setAdapter(ExpandableListAdapter adapter) {
+        mAdapter = adapter;
+        mExpandedIds.clear();
+        mExpanded = new boolean[adapter == null ? 0 : adapter.getGroupCount()];
+        rebuild();
+    }
+
+    /**
+     * 数据变化后调用，adapter有稳定id时按id保留展开状态，否则按位置保留
+     */
+    void onDataChanged() {
+        if (mAdapter == null) {
+            return;
+        }
+        int groupCount = mAdapter.getGroupCount();
+        boolean[] expanded = new boolean[groupCount];
+        if (mAdapter.hasStableIds()) {
+            //数据变化后已经取不到旧位置上的组id，所以使用展开时记录下来的id
+            for (int i = 0; i < groupCount; i++) {
+                expanded[i] = mExpandedIds.contains(mAdapter.getGroupId(i));
+            }
+        } else {
+            System.arraycopy(mExpanded, 0, expanded, 0, Math.min(mExpanded.length, groupCount));
+        }
+        mExpanded = expanded;
+        rebuild();
+    }
+
+    int getFlatCount() {
+        return mFlatCount;
+    }
+
+    boolean isExpanded(int groupPosition) {
+        return groupPosition >= 0 && groupPosition < mExpanded.length && mExpanded[groupPosition];
+    }
+
+    /**
+     * @param groupPosition
+     * @param expanded
+     * @return 状态是否发生了变化
+     */
+    boolean setExpanded(int groupPosition, boolean expanded) {
+        if (groupPosition < 0 || groupPosition >= mExpanded.length || mExpanded[groupPosition] == expanded) {
+            return false;
+        }
+        mExpanded[groupPosition] = expanded;
+        if (mAdapter.hasStableIds()) {
+            long id = mAdapter.getGroupId(groupPosition);
+            if (expanded) {
+                mExpandedIds.add(id);
+            } else {
+                mExpandedIds.remove(id);
+            }
+        }
+        rebuild();
+        return true;
+    }
+
+    /**
+     * @param flatPosition
+     * @return packed position，越界时返回{@link ExpandableListView#PACKED_POSITION_VALUE_NULL}
+     */
+    long getPackedPosition(int flatPosition) {
+        if (flatPosition < 0 || flatPosition >= mFlatCount) {
+            return ExpandableListView.PACKED_POSITION_VALUE_NULL;
+        }
+        int group = findGroup(flatPosition);
+        int child = flatPosition - mGroupFlatPos[group] - 1;
+        if (child < 0) {
+            return ExpandableListView.getPackedPositionForGroup(group);
+        }
+        return ExpandableListView.getPackedPositionForChild(group, child);
+    }
+
+    /**
+     * @param packedPosition
+     * @return 扁平位置，所在的组没有展开或者越界时返回-1
+     */
+    int getFlatPosition(long packedPosition) {
+        int group = ExpandableListView.getPackedPositionGroup(packedPosition);
+        if (group < 0 || group >= mGroupFlatPos.length) {
+            return -1;
+        }
+        int type = ExpandableListView.getPackedPositionType(packedPosition);
+        if (type == ExpandableListView.PACKED_POSITION_TYPE_GROUP) {
+            return mGroupFlatPos[group];
+        }
+        int child = ExpandableListView.getPackedPositionChild(packedPosition);
+        if (type != ExpandableListView.PACKED_POSITION_TYPE_CHILD || !mExpanded[group]
+                || child < 0 || child >= mAdapter.getChildrenCount(group)) {
+            return -1;
+        }
+        return mGroupFlatPos[group] + 1 + child;
+    }
+
+    /**
+     * @param groupPosition
+     * @return 该组的group条目在扁平列表中的位置
+     */
+    int getGroupFlatPosition(int groupPosition) {
+        return mGroupFlatPos[groupPosition];
+    }
+
+    private int findGroup(int flatPosition) {
+        //最后一个group条目位置不大于flatPosition的组
+        int low = 0;
+        int high = mGroupFlatPos.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mGroupFlatPos[mid] <= flatPosition) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void rebuild() {
+        int groupCount = mExpanded.length;
+        if (mGroupFlatPos.length != groupCount) {
+            mGroupFlatPos = new int[groupCount];
+        }
+        int flat = 0;
+        for (int i = 0; i < groupCount; i++) {
+            mGroupFlatPos[i] = flat;
+            flat += 1 + (mExpanded[i] ? mAdapter.getChildrenCount(i) : 0);
+        }
+        mFlatCount = flat;
+    }
+}
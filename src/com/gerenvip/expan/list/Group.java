@@ -3,6 +3,8 @@ package com.gerenvip.expan.list;
 public class Group {
 
     private String title;
+    //头像图片的key，交给ImageLoader加载
+    private String avatar;
 
     public String getTitle() {
         return title;
@@ -11,4 +13,12 @@ public class Group {
     public void setTitle(String title) {
         this.title = title;
     }
+
+    public String getAvatar() {
+        return avatar;
+    }
+
+    public void setAvatar(String avatar) {
+        this.avatar = avatar;
+    }
 }
@@ -0,0 +1,218 @@
+package com.gerenvip.expan.list;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 在后台线程中逐行解析分组数据，按批次把解析好的分组交给ui线程追加到adapter中，
+ * 第一批数据到达后列表和悬停的header就可以显示，不需要等待整个文件解析完成。
+ * 每解析够一批就发布，即使当前分组还没有结束：子条目很多的分组会先显示已经解析的部分，
+ * 剩下的子条目通过{@link Callback#onChildrenLoaded(List)}追加
+ * <p/>
+ * 文件格式(UTF-8)，每行一条：
+ * 以#开头的行是分组：#标题[,头像key]
+ * 其余的行是上一个分组的子条目：名字,年龄,地址
+ */
+public class GroupStreamLoader {
+
+    private static final String TAG = "GroupStreamLoader";
+    //每一批包含的条目数(分组和子条目都算)
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    public interface Callback {
+        /**
+         * 一批分组解析完成，在ui线程回调，最后一个分组可能还不完整，后续的子条目通过{@link #onChildrenLoaded(List)}追加
+         *
+         * @param groups
+         * @param children 与groups一一对应的子条目
+         */
+        public void onBatchLoaded(List<Group> groups, List<List<People>> children);
+
+        /**
+         * 已经回调的最后一个分组的后续子条目，在ui线程回调，总是在下一次onBatchLoaded之前
+         *
+         * @param children 追加到最后一个分组末尾的子条目
+         */
+        public void onChildrenLoaded(List<People> children);
+
+        /**
+         * 全部解析完成，在ui线程回调
+         */
+        public void onLoadFinished();
+
+        /**
+         * 读取失败，在ui线程回调，之前已经回调的批次仍然有效
+         *
+         * @param e
+         */
+        public void onLoadFailed(IOException e);
+    }
+
+    private final InputStream mInputStream;
+    private final Callback mCallback;
+    private final int mBatchSize;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mCanceled = false;
+
+    public GroupStreamLoader(InputStream inputStream, Callback callback) {
+        this(inputStream, DEFAULT_BATCH_SIZE, callback);
+    }
+
+    /**
+     * @param inputStream 数据源，解析结束后会被关闭
+     * @param batchSize   每一批包含的条目数
+     * @param callback
+     */
+    public GroupStreamLoader(InputStream inputStream, int batchSize, Callback callback) {
+        mInputStream = inputStream;
+        mBatchSize = batchSize;
+        mCallback = callback;
+    }
+
+    public void start() {
+        new Thread("Thread#GroupStreamLoader") {
+            @Override
+            public void run() {
+                load();
+            }
+        }.start();
+    }
+
+    /**
+     * 取消后不会再有任何回调
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(mInputStream, "UTF-8"), BUFFER_SIZE);
+            List<Group> groups = new ArrayList<Group>();
+            List<List<People>> children = new ArrayList<List<People>>();
+            List<People> current = null;
+            //已经发布过的分组(最后一个)的后续子条目
+            List<People> tail = null;
+            int count = 0;
+            String line;
+            while (!mCanceled && (line = reader.readLine()) != null) {
+                if (line.length() == 0) {
+                    continue;
+                }
+                if (line.charAt(0) == '#') {
+                    groups.add(parseGroup(line));
+                    current = new ArrayList<People>();
+                    children.add(current);
+                } else if (current != null) {
+                    People people = parsePeople(line);
+                    if (people != null) {
+                        current.add(people);
+                    }
+                } else {
+                    Log.w(TAG, "child without group: " + line);
+                    continue;
+                }
+                if (++count >= mBatchSize) {
+                    //够一批就发布，当前分组还没有结束时，后面的子条目放到新的列表中，已经发布的列表不再修改
+                    publish(tail, groups, children);
+                    groups = new ArrayList<Group>();
+                    children = new ArrayList<List<People>>();
+                    tail = new ArrayList<People>();
+                    current = tail;
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                publish(tail, groups, children);
+            }
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCanceled) {
+                        mCallback.onLoadFinished();
+                    }
+                }
+            });
+        } catch (final IOException e) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mCanceled) {
+                        mCallback.onLoadFailed(e);
+                    }
+                }
+            });
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                } else {
+                    mInputStream.close();
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "close failed", e);
+            }
+        }
+    }
+
+    /**
+     * @param tail     上一批最后一个分组的后续子条目，可以为null
+     * @param groups
+     * @param children
+     */
+    private void publish(final List<People> tail, final List<Group> groups, final List<List<People>> children) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mCanceled) {
+                    return;
+                }
+                if (tail != null && !tail.isEmpty()) {
+                    mCallback.onChildrenLoaded(tail);
+                }
+                if (!groups.isEmpty()) {
+                    mCallback.onBatchLoaded(groups, children);
+                }
+            }
+        });
+    }
+
+    private static Group parseGroup(String line) {
+        Group group = new Group();
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            group.setTitle(line.substring(1));
+        } else {
+            group.setTitle(line.substring(1, comma));
+            group.setAvatar(line.substring(comma + 1));
+        }
+        return group;
+    }
+
+    private static People parsePeople(String line) {
+        String[] fields = line.split(",", 3);
+        if (fields.length < 3) {
+            Log.w(TAG, "bad line: " + line);
+            return null;
+        }
+        People people = new People();
+        people.setName(fields[0]);
+        try {
+            people.setAge(Integer.parseInt(fields[1].trim()));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "bad age: " + line);
+        }
+        people.setAddress(fields[2]);
+        return people;
+    }
+}
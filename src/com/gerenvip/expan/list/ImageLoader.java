@@ -0,0 +1,311 @@
+package com.gerenvip.expan.list;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 给分组条目、子条目以及悬停的header异步加载图片
+ * 1.内存缓存按字节数做LRU淘汰
+ * 2.同一个key同时只有一个解码任务，多个ImageView共享结果
+ * 3.ImageView被复用(convertView)或回收时取消之前的请求
+ * 除了{@link Decoder#decode(String)}在后台线程执行外，其余方法都必须在ui线程调用
+ */
+public class ImageLoader {
+
+    private static final String TAG = "ImageLoader";
+    //最多记录的解码失败的key个数，超过时清空重新记录
+    private static final int MAX_FAILED_KEYS = 64;
+
+    public interface Decoder {
+        /**
+         * 在后台线程中解码图片
+         *
+         * @param key
+         * @return 解码失败返回null
+         */
+        public Bitmap decode(String key);
+    }
+
+    public interface OnImageSetListener {
+        /**
+         * 异步加载的图片设置到imageView上之后在ui线程回调
+         * 没有parent的view(例如API 18以下悬停的header)中的ImageView不会自己触发重绘，需要在这里处理
+         *
+         * @param imageView
+         */
+        public void onImageSet(ImageView imageView);
+    }
+
+    private final Decoder mDecoder;
+    private final ExecutorService mExecutor;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final BitmapCache mCache;
+    //正在解码的请求，key相同的请求合并为一个
+    private final Map<String, Request> mRequests = new HashMap<String, Request>();
+    //每个ImageView当前绑定的key
+    private final Map<ImageView, String> mTargets = new WeakHashMap<ImageView, String>();
+    //解码失败的key，再次加载时直接显示placeholder，不会每一帧(例如updatePinnedHeader)都重新解码
+    private final Set<String> mFailedKeys = new HashSet<String>();
+    private OnImageSetListener mOnImageSetListener;
+
+    /**
+     * @param maxBytes 内存缓存的最大字节数
+     * @param decoder
+     */
+    public ImageLoader(int maxBytes, Decoder decoder) {
+        this(maxBytes, 2, decoder);
+    }
+
+    public ImageLoader(int maxBytes, int threadCount, Decoder decoder) {
+        mCache = new BitmapCache(maxBytes);
+        mExecutor = Executors.newFixedThreadPool(threadCount);
+        mDecoder = decoder;
+    }
+
+    public void setOnImageSetListener(OnImageSetListener listener) {
+        mOnImageSetListener = listener;
+    }
+
+    /**
+     * 把key对应的图片加载到imageView上
+     * 如果imageView已经显示着该key的图片(例如每次updatePinnedHeader时)，直接返回，不会重复加载
+     *
+     * @param key         为null时(例如数据中没有头像)取消imageView上之前的请求，只显示placeholder
+     * @param imageView
+     * @param placeholder 图片加载完成前显示的图片资源，为0时不设置
+     */
+    public void load(String key, ImageView imageView, int placeholder) {
+        if (key == null) {
+            //复用的view上可能还在加载上一个条目的图片，取消它，避免加载完成后显示错误的图片
+            cancel(imageView);
+            if (placeholder != 0) {
+                imageView.setImageResource(placeholder);
+            }
+            return;
+        }
+        String oldKey = mTargets.get(imageView);
+        if (key.equals(oldKey) && !mRequests.containsKey(key) && mCache.get(key) != null) {
+            return;
+        }
+        if (mFailedKeys.contains(key)) {
+            if (key.equals(oldKey)) {
+                //已经显示着placeholder
+                return;
+            }
+            cancel(imageView);
+            mTargets.put(imageView, key);
+            if (placeholder != 0) {
+                imageView.setImageResource(placeholder);
+            }
+            return;
+        }
+        if (oldKey != null && !oldKey.equals(key)) {
+            cancel(imageView);
+        }
+        mTargets.put(imageView, key);
+
+        //命中缓存时直接复用已经解码好的bitmap，分组条目和悬停的header显示的是同一个对象
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+        if (placeholder != 0) {
+            imageView.setImageResource(placeholder);
+        }
+
+        Request request = mRequests.get(key);
+        if (request == null) {
+            request = new Request(key);
+            mRequests.put(key, request);
+            request.future = mExecutor.submit(request);
+        }
+        if (!request.targets.contains(imageView)) {
+            request.targets.add(imageView);
+        }
+    }
+
+    public void load(String key, ImageView imageView) {
+        load(key, imageView, 0);
+    }
+
+    /**
+     * 取消imageView上的请求，如果该key已经没有其他ImageView在等待，中断解码任务
+     *
+     * @param imageView
+     */
+    public void cancel(ImageView imageView) {
+        String key = mTargets.remove(imageView);
+        if (key == null) {
+            return;
+        }
+        Request request = mRequests.get(key);
+        if (request == null) {
+            return;
+        }
+        request.targets.remove(imageView);
+        if (request.targets.isEmpty()) {
+            mRequests.remove(key);
+            request.future.cancel(true);
+        }
+    }
+
+    /**
+     * 取消view本身及其所有子ImageView上的请求，用于convertView被回收时
+     *
+     * @param view
+     */
+    public void cancelAll(View view) {
+        if (view instanceof ImageView) {
+            cancel((ImageView) view);
+        } else if (view instanceof ViewGroup) {
+            ViewGroup parent = (ViewGroup) view;
+            for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+                cancelAll(parent.getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * @param key
+     * @return 内存缓存中的bitmap，没有或者key为null时返回null
+     */
+    public Bitmap getCached(String key) {
+        return key == null ? null : mCache.get(key);
+    }
+
+    /**
+     * 清空内存缓存，同时忘记解码失败的key(可能是内存不足导致的失败)，之后会重新尝试
+     */
+    public void clearCache() {
+        mCache.trimToSize(0);
+        mFailedKeys.clear();
+    }
+
+    /**
+     * 取消所有请求并关闭后台线程，之后不能再使用
+     */
+    public void shutdown() {
+        for (Request request : mRequests.values()) {
+            request.future.cancel(true);
+        }
+        mRequests.clear();
+        mTargets.clear();
+        mExecutor.shutdownNow();
+    }
+
+    private void deliver(Request request, Bitmap bitmap) {
+        //已经被取消，或者又有新的同key请求替换了它
+        if (mRequests.get(request.key) != request) {
+            return;
+        }
+        mRequests.remove(request.key);
+        if (bitmap == null) {
+            Log.w(TAG, "decode failed, key=" + request.key);
+            if (mFailedKeys.size() >= MAX_FAILED_KEYS) {
+                mFailedKeys.clear();
+            }
+            mFailedKeys.add(request.key);
+            return;
+        }
+        mCache.put(request.key, bitmap);
+        for (ImageView imageView : request.targets) {
+            //只更新仍然绑定着该key的ImageView
+            if (request.key.equals(mTargets.get(imageView))) {
+                imageView.setImageBitmap(bitmap);
+                if (mOnImageSetListener != null) {
+                    mOnImageSetListener.onImageSet(imageView);
+                }
+            }
+        }
+    }
+
+    private class Request implements Runnable {
+        final String key;
+        final List<ImageView> targets = new ArrayList<ImageView>(1);
+        Future<?> future;
+
+        Request(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            Bitmap decoded = null;
+            try {
+                decoded = mDecoder.decode(key);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "decode error, key=" + key, e);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "decode out of memory, key=" + key, e);
+            }
+            //无论成功、失败还是被取消都要回到ui线程，否则请求会一直留在mRequests中，之后同key的加载都会挂在它上面
+            final Bitmap bitmap = decoded;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Request.this, bitmap);
+                }
+            });
+        }
+    }
+
+    /**
+     * 按字节数计算大小的LRU缓存，只在ui线程访问
+     */
+    private static class BitmapCache {
+        private final LinkedHashMap<String, Bitmap> mMap = new LinkedHashMap<String, Bitmap>(16, 0.75f, true);
+        private final int mMaxBytes;
+        private int mBytes;
+
+        BitmapCache(int maxBytes) {
+            mMaxBytes = maxBytes;
+        }
+
+        Bitmap get(String key) {
+            return mMap.get(key);
+        }
+
+        void put(String key, Bitmap bitmap) {
+            Bitmap previous = mMap.put(key, bitmap);
+            mBytes += sizeOf(bitmap);
+            if (previous != null) {
+                mBytes -= sizeOf(previous);
+            }
+            trimToSize(mMaxBytes);
+        }
+
+        void trimToSize(int maxBytes) {
+            Iterator<Map.Entry<String, Bitmap>> iterator = mMap.entrySet().iterator();
+            //accessOrder为true，迭代顺序就是最久未使用的在前
+            while (mBytes > maxBytes && iterator.hasNext()) {
+                Bitmap eldest = iterator.next().getValue();
+                iterator.remove();
+                mBytes -= sizeOf(eldest);
+            }
+        }
+
+        private static int sizeOf(Bitmap bitmap) {
+            //getByteCount()要求API 12
+            return bitmap.getRowBytes() * bitmap.getHeight();
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.gerenvip.expan.list;
 
 import android.app.Activity;
+import android.app.ActivityManager;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -10,11 +14,13 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class MyActivity extends Activity implements ExpandableListView.OnChildClickListener, ExpandableListView.OnGroupClickListener,
-        PinnedHeaderExpandableListView.OnHeaderUpdateListener, StickyLayout.OnGiveUpTouchEventListener {
+        PinnedHeaderExpandableListView.OnHeaderUpdateListener, StickyLayout.OnGiveUpTouchEventListener,
+        GroupStreamLoader.Callback {
 
 
     private static final String TAG = "MyActivity";
@@ -23,6 +29,9 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
     private ArrayList<Group> groupList;
     private ArrayList<List<People>> childList;
     private MyExpandableListAdapter adapter;
+    private ImageLoader imageLoader;
+    private SelectionModel selectionModel = new SelectionModel();
+    private GroupStreamLoader loader;
 
     /**
      * Called when the activity is first created.
@@ -33,28 +42,88 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
         setContentView(R.layout.main);
         expandableListView = (PinnedHeaderExpandableListView) findViewById(R.id.expandable_ist);
         stickyLayout = (StickyLayout) findViewById(R.id.sticky_layout);
-        initData();
+        groupList = new ArrayList<Group>();
+        childList = new ArrayList<List<People>>();
+
+        //内存缓存使用应用可用内存的1/8
+        int memoryClass = ((ActivityManager) getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
+        imageLoader = new ImageLoader(memoryClass * 1024 * 1024 / 8, new ImageLoader.Decoder() {
+            @Override
+            public Bitmap decode(String key) {
+                //示例中所有头像都使用同一张图片，实际项目中根据key从文件或网络解码
+                return BitmapFactory.decodeResource(getResources(), R.drawable.ic_launcher);
+            }
+        });
+        expandableListView.setImageLoader(imageLoader);
+        if (savedInstanceState != null) {
+            selectionModel.onRestoreInstanceState(savedInstanceState);
+        }
+        expandableListView.setSelectionModel(selectionModel);
 
         adapter = new MyExpandableListAdapter(this);
         expandableListView.setAdapter(adapter);
 
-        // 展开所有group
-        for (int i = 0, count = expandableListView.getCount(); i < count; i++) {
-            expandableListView.expandGroup(i);
-        }
-
         expandableListView.setOnChildClickListener(this);
         expandableListView.setOnGroupClickListener(this);
 
-        expandableListView.setOnHeaderUpdateListener(this);
         stickyLayout.setOnGiveUpTouchEventListener(this);
 
+        //在后台分批解析数据，第一批到达后就显示列表和悬停的header
+        loader = new GroupStreamLoader(getResources().openRawResource(R.raw.people), this);
+        loader.start();
+    }
+
+    @Override
+    public void onBatchLoaded(List<Group> groups, List<List<People>> children) {
+        int start = groupList.size();
+        groupList.addAll(groups);
+        childList.addAll(children);
+        // 先一次展开新加入的group，再通知一次数据变化，列表在下一帧只布局一次
+        expandableListView.expandGroups(start, groupList.size());
+        //新的分组追加在末尾，列表会保持当前的滚动位置和已有分组的展开状态
+        adapter.notifyDataSetChanged();
+        if (start == 0) {
+            //有了数据才能设置悬停的header
+            expandableListView.setOnHeaderUpdateListener(this);
+        }
+    }
+
+    @Override
+    public void onChildrenLoaded(List<People> children) {
+        //子条目很多的分组分批到达，追加到最后一个分组，展开状态不变
+        childList.get(childList.size() - 1).addAll(children);
+        adapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public void onLoadFinished() {
+        Log.d(TAG, "load finished, group count=" + groupList.size());
+    }
+
+    @Override
+    public void onLoadFailed(IOException e) {
+        Log.e(TAG, "load failed", e);
+        Toast.makeText(this, "load failed", Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        selectionModel.onSaveInstanceState(outState);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loader.cancel();
+        imageLoader.shutdown();
     }
 
     @Override
     public boolean onChildClick(ExpandableListView parent, View v, int groupPosition, int childPosition, long id) {
-        Toast.makeText(MyActivity.this, childList.get(groupPosition).get(childPosition).getName(), Toast.LENGTH_LONG).show();
-        return false;
+        //点击子条目切换选中状态
+        selectionModel.toggle(adapter.getGroupId(groupPosition), childPosition);
+        return true;
     }
 
     @Override
@@ -72,17 +141,94 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
         View headerView = (ViewGroup) getLayoutInflater().inflate(R.layout.group, null);
         headerView.setLayoutParams(new AbsListView.LayoutParams(
                 AbsListView.LayoutParams.MATCH_PARENT, AbsListView.LayoutParams.WRAP_CONTENT));
+        //悬停的组总是展开的
+        ((ImageView) headerView.findViewById(R.id.image)).setImageResource(R.drawable.expanded);
         return headerView;
     }
 
+    /**
+     * 每一帧滑动都会调用，只修改真正变化了的内容：
+     * wrap_content的TextView即使设置相同的文字也会requestLayout，使列表缓存的header测量结果失效。
+     * header没有parent，文字变化时的requestLayout传不到列表，需要调用notifyPinnedHeaderChanged重新测量，否则文字会被截断
+     */
     @Override
     public void updatePinnedHeader(View headerView, int firstVisibileGroupPos) {
-        Log.e(TAG, "firstVisibileGroupPos=" + firstVisibileGroupPos);
         Group firstVisibleGroup = (Group) adapter.getGroup(firstVisibileGroupPos);
-        TextView textView = (TextView) headerView.findViewById(R.id.group);
-        ImageView imageView = (ImageView) headerView.findViewById(R.id.image);
-        imageView.setImageResource(R.drawable.expanded);
-        textView.setText(firstVisibleGroup.getTitle());
+        boolean textChanged = setTextIfChanged((TextView) headerView.findViewById(R.id.group), firstVisibleGroup.getTitle());
+        textChanged |= bindGroupCheck((CheckBox) headerView.findViewById(R.id.check), firstVisibileGroupPos);
+        if (textChanged) {
+            expandableListView.notifyPinnedHeaderChanged();
+        }
+        //分组条目已经加载过的头像会直接从缓存复用，同一组重复调用不会重新加载
+        //快速滑动时不发起加载，停止后会再完整调用一次
+        bindAvatar((ImageView) headerView.findViewById(R.id.avatar), firstVisibleGroup.getAvatar(),
+                expandableListView.isFastBinding());
+    }
+
+    /**
+     * 分组条目和悬停header共用的头像绑定
+     *
+     * @param avatarView
+     * @param avatar     数据中没有头像时为null，只显示占位
+     * @param fastBind   快速滑动中：只使用已经缓存的头像，没有缓存时取消之前的请求并显示占位，不发起新的加载
+     */
+    private void bindAvatar(ImageView avatarView, String avatar, boolean fastBind) {
+        if (avatar != null && (!fastBind || imageLoader.getCached(avatar) != null)) {
+            //命中缓存时load会同步设置bitmap，同时取消该view上其他key的请求
+            imageLoader.load(avatar, avatarView, android.R.color.transparent);
+        } else {
+            imageLoader.cancel(avatarView);
+            avatarView.setImageResource(android.R.color.transparent);
+        }
+    }
+
+    /**
+     * 分组条目和悬停header上的三态checkbox：全选时勾选，部分选中时显示选中个数
+     *
+     * @param checkBox
+     * @param groupPosition
+     * @return checkbox上的文字是否发生了变化
+     */
+    private boolean bindGroupCheck(CheckBox checkBox, int groupPosition) {
+        long groupId = adapter.getGroupId(groupPosition);
+        int childrenCount = adapter.getChildrenCount(groupPosition);
+        int state = selectionModel.getGroupState(groupId, childrenCount);
+        checkBox.setChecked(state == SelectionModel.STATE_ALL);
+        boolean textChanged;
+        if (state == SelectionModel.STATE_PARTIAL) {
+            textChanged = setTextIfChanged(checkBox, selectionModel.getSelectedCount(groupId, childrenCount) + "/" + childrenCount);
+        } else {
+            textChanged = setTextIfChanged(checkBox, "");
+        }
+        //点击时再读取所在的组和选中状态，不需要每次绑定都创建新的listener
+        checkBox.setTag(groupPosition);
+        checkBox.setOnClickListener(groupCheckListener);
+        return textChanged;
+    }
+
+    private final View.OnClickListener groupCheckListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int groupPosition = (Integer) v.getTag();
+            long groupId = adapter.getGroupId(groupPosition);
+            int childrenCount = adapter.getChildrenCount(groupPosition);
+            if (selectionModel.getGroupState(groupId, childrenCount) == SelectionModel.STATE_ALL) {
+                selectionModel.clearAll(groupId);
+            } else {
+                selectionModel.selectAll(groupId);
+            }
+        }
+    };
+
+    /**
+     * @return 文字是否发生了变化
+     */
+    private static boolean setTextIfChanged(TextView textView, CharSequence text) {
+        if (TextUtils.equals(textView.getText(), text)) {
+            return false;
+        }
+        textView.setText(text);
+        return true;
     }
 
     //stickyLayou
@@ -98,16 +244,24 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
         return false;
     }
 
-    private class MyExpandableListAdapter extends BaseExpandableListAdapter {
+    private class MyExpandableListAdapter extends BaseExpandableListAdapter
+            implements PinnedHeaderExpandableListView.OnBindModeChangeListener {
 
         private Context context;
         private LayoutInflater inflater;
+        //快速滑动中，只做轻量绑定
+        private boolean fastBind;
 
         private MyExpandableListAdapter(Context context) {
             this.context = context;
             this.inflater = LayoutInflater.from(context);
         }
 
+        @Override
+        public void onBindModeChanged(boolean fastBind) {
+            this.fastBind = fastBind;
+        }
+
         // 返回父列表个数
         @Override
         public int getGroupCount() {
@@ -155,12 +309,18 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
                         .findViewById(R.id.group);
                 groupHolder.imageView = (ImageView) convertView
                         .findViewById(R.id.image);
+                groupHolder.avatarView = (ImageView) convertView
+                        .findViewById(R.id.avatar);
+                groupHolder.checkBox = (CheckBox) convertView
+                        .findViewById(R.id.check);
                 convertView.setTag(groupHolder);
             } else {
                 groupHolder = (GroupHolder) convertView.getTag();
             }
             groupHolder.textView.setText(((Group) getGroup(groupPosition))
                     .getTitle());
+            bindGroupCheck(groupHolder.checkBox, groupPosition);
+            bindAvatar(groupHolder.avatarView, ((Group) getGroup(groupPosition)).getAvatar(), fastBind);
             if (isExpanded)// ture is Expanded or false is not isExpanded
                 groupHolder.imageView.setImageResource(R.drawable.expanded);
             else
@@ -184,6 +344,8 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
                         .findViewById(R.id.image);
                 childHolder.button = (Button) convertView
                         .findViewById(R.id.button1);
+                childHolder.checkBox = (CheckBox) convertView
+                        .findViewById(R.id.check);
                 convertView.setTag(childHolder);
             } else {
                 childHolder = (ChildHolder) convertView.getTag();
@@ -191,6 +353,14 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
 
             childHolder.textName.setText(((People) getChild(groupPosition,
                     childPosition)).getName());
+            childHolder.checkBox.setChecked(selectionModel.isSelected(getGroupId(groupPosition), childPosition));
+            if (fastBind) {
+                //快速滑动时只显示名字，其余内容在停止后重新绑定
+                childHolder.textAge.setText(null);
+                childHolder.textAddress.setText(null);
+                childHolder.button.setOnClickListener(null);
+                return convertView;
+            }
             childHolder.textAge.setText(String.valueOf(((People) getChild(
                     groupPosition, childPosition)).getAge()));
             childHolder.textAddress.setText(((People) getChild(groupPosition,
@@ -215,6 +385,8 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
     class GroupHolder {
         TextView textView;
         ImageView imageView;
+        ImageView avatarView;
+        CheckBox checkBox;
     }
 
     class ChildHolder {
@@ -223,55 +395,6 @@ public class MyActivity extends Activity implements ExpandableListView.OnChildCl
         TextView textAddress;
         ImageView imageView;
         Button button;
-    }
-
-    /**
-     * InitData
-     */
-    void initData() {
-        groupList = new ArrayList<Group>();
-        Group group = null;
-        for (int i = 0; i < 3; i++) {
-            group = new Group();
-            group.setTitle("group-" + i);
-            groupList.add(group);
-        }
-
-        childList = new ArrayList<List<People>>();
-        for (int i = 0; i < groupList.size(); i++) {
-            ArrayList<People> childTemp;
-            if (i == 0) {
-                childTemp = new ArrayList<People>();
-                for (int j = 0; j < 13; j++) {
-                    People people = new People();
-                    people.setName("yy-" + j);
-                    people.setAge(30);
-                    people.setAddress("sh-" + j);
-
-                    childTemp.add(people);
-                }
-            } else if (i == 1) {
-                childTemp = new ArrayList<People>();
-                for (int j = 0; j < 8; j++) {
-                    People people = new People();
-                    people.setName("ff-" + j);
-                    people.setAge(40);
-                    people.setAddress("sh-" + j);
-
-                    childTemp.add(people);
-                }
-            } else {
-                childTemp = new ArrayList<People>();
-                for (int j = 0; j < 23; j++) {
-                    People people = new People();
-                    people.setName("hh-" + j);
-                    people.setAge(20);
-                    people.setAddress("sh-" + j);
-
-                    childTemp.add(people);
-                }
-            }
-            childList.add(childTemp);
-        }
+        CheckBox checkBox;
     }
 }
@@ -0,0 +1,343 @@
+package com.gerenvip.expan.list;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+import android.widget.Checkable;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把悬停的header作为列表的虚拟子view暴露给无障碍服务(API 16以上)
+ * header不是列表真正的子view(API 18以下甚至没有parent)，无障碍服务看不到它，
+ * 这里用虚拟view描述header以及header中可点击的子view，使TalkBack可以朗读、聚焦和点击它们
+ * 列表本身的节点仍然由列表生成，真正的子条目不受影响
+ * 注意：只支持无障碍焦点，header不能获得键盘(方向键)焦点
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class PinnedHeaderAccessibilityProvider extends AccessibilityNodeProvider {
+
+    //header自身的虚拟view id，header中可点击的子view从HEADER_ID + 1开始编号
+    static final int HEADER_ID = 1;
+    private static final int INVALID_ID = Integer.MIN_VALUE;
+
+    private final PinnedHeaderExpandableListView mHost;
+    private final AccessibilityManager mManager;
+    //header中可点击的子view，下标 + HEADER_ID + 1 就是它的虚拟view id
+    private final List<View> mTargets = new ArrayList<View>();
+    private int mFocusedId = INVALID_ID;
+    private int mHoveredId = INVALID_ID;
+    private final Rect mTempRect = new Rect();
+    private final int[] mTempLocation = new int[2];
+
+    PinnedHeaderAccessibilityProvider(PinnedHeaderExpandableListView host) {
+        mHost = host;
+        mManager = (AccessibilityManager) host.getContext().getSystemService(Context.ACCESSIBILITY_SERVICE);
+    }
+
+    @Override
+    public AccessibilityNodeInfo createAccessibilityNodeInfo(int virtualViewId) {
+        //View.NO_ID即HOST_VIEW_ID(API 19才公开)
+        if (virtualViewId == View.NO_ID) {
+            //列表自身的节点，包含真正的子条目，再加上header
+            AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mHost);
+            mHost.onInitializeAccessibilityNodeInfo(info);
+            if (mHost.getPinnedHeaderForAccessibility() != null) {
+                info.addChild(mHost, HEADER_ID);
+            }
+            return info;
+        }
+        View header = mHost.getPinnedHeaderForAccessibility();
+        if (header == null) {
+            return null;
+        }
+        if (virtualViewId == HEADER_ID) {
+            collectTargets(header);
+            AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mHost, HEADER_ID);
+            info.setParent(mHost);
+            info.setClassName(header.getClass().getName());
+            info.setContentDescription(getDescription(header));
+            for (int i = 0, count = mTargets.size(); i < count; i++) {
+                info.addChild(mHost, HEADER_ID + 1 + i);
+            }
+            //点击header展开或者收起当前组，与触摸header的行为一致
+            info.setClickable(true);
+            info.addAction(AccessibilityNodeInfo.ACTION_CLICK);
+            initNode(info, HEADER_ID, header);
+            return info;
+        }
+        View target = getVirtualView(virtualViewId);
+        if (target == null) {
+            return null;
+        }
+        AccessibilityNodeInfo info = AccessibilityNodeInfo.obtain(mHost, virtualViewId);
+        info.setParent(mHost, HEADER_ID);
+        info.setClassName(target.getClass().getName());
+        if (target instanceof TextView) {
+            info.setText(((TextView) target).getText());
+        }
+        info.setContentDescription(target.getContentDescription());
+        if (target instanceof Checkable) {
+            info.setCheckable(true);
+            info.setChecked(((Checkable) target).isChecked());
+        }
+        info.setEnabled(target.isEnabled());
+        info.setClickable(true);
+        info.addAction(AccessibilityNodeInfo.ACTION_CLICK);
+        initNode(info, virtualViewId, target);
+        return info;
+    }
+
+    @Override
+    public boolean performAction(int virtualViewId, int action, Bundle arguments) {
+        if (virtualViewId == View.NO_ID) {
+            return mHost.performAccessibilityAction(action, arguments);
+        }
+        View view = getVirtualView(virtualViewId);
+        if (view == null) {
+            return false;
+        }
+        switch (action) {
+            case AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS:
+                if (mFocusedId != virtualViewId) {
+                    if (mFocusedId != INVALID_ID) {
+                        sendEvent(mFocusedId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+                    }
+                    mFocusedId = virtualViewId;
+                    mHost.invalidatePinnedHeader();
+                    sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED);
+                }
+                return true;
+            case AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS:
+                if (mFocusedId == virtualViewId) {
+                    mFocusedId = INVALID_ID;
+                    mHost.invalidatePinnedHeader();
+                    sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED);
+                }
+                return true;
+            case AccessibilityNodeInfo.ACTION_CLICK:
+                if (virtualViewId == HEADER_ID) {
+                    mHost.togglePinnedHeaderGroup();
+                } else if (view.isEnabled()) {
+                    view.performClick();
+                    mHost.invalidatePinnedHeader();
+                } else {
+                    return false;
+                }
+                sendEvent(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * 触摸浏览模式下，把header区域的hover事件转换成虚拟view的hover事件
+     *
+     * @param event
+     * @return 事件是否落在header上
+     */
+    boolean dispatchHoverEvent(MotionEvent event) {
+        if (!mManager.isEnabled() || !mManager.isTouchExplorationEnabled()) {
+            return false;
+        }
+        View header = mHost.getPinnedHeaderForAccessibility();
+        int x = (int) event.getX();
+        int y = (int) event.getY();
+        int id = INVALID_ID;
+        if (header != null && y >= header.getTop() && y <= header.getBottom()) {
+            collectTargets(header);
+            id = HEADER_ID;
+            for (int i = 0, count = mTargets.size(); i < count; i++) {
+                getBoundsInHost(mTargets.get(i), mTempRect);
+                if (mTempRect.contains(x, y)) {
+                    id = HEADER_ID + 1 + i;
+                    break;
+                }
+            }
+        }
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_HOVER_ENTER:
+            case MotionEvent.ACTION_HOVER_MOVE:
+                updateHoveredId(id);
+                return id != INVALID_ID;
+            case MotionEvent.ACTION_HOVER_EXIT:
+                boolean handled = mHoveredId != INVALID_ID;
+                updateHoveredId(INVALID_ID);
+                return handled;
+        }
+        return false;
+    }
+
+    /**
+     * header显示的组发生变化时调用，通知无障碍服务重新获取header的节点
+     */
+    void onHeaderChanged() {
+        if (mManager.isEnabled()) {
+            sendEvent(HEADER_ID, AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED);
+        }
+    }
+
+    private void updateHoveredId(int id) {
+        if (mHoveredId == id) {
+            return;
+        }
+        int previous = mHoveredId;
+        mHoveredId = id;
+        if (id != INVALID_ID) {
+            sendEvent(id, AccessibilityEvent.TYPE_VIEW_HOVER_ENTER);
+        }
+        if (previous != INVALID_ID) {
+            sendEvent(previous, AccessibilityEvent.TYPE_VIEW_HOVER_EXIT);
+        }
+    }
+
+    private View getVirtualView(int virtualViewId) {
+        View header = mHost.getPinnedHeaderForAccessibility();
+        if (header == null) {
+            return null;
+        }
+        if (virtualViewId == HEADER_ID) {
+            return header;
+        }
+        //header的内容可能已经随着滑动变化，按当前的子view重新编号
+        collectTargets(header);
+        int index = virtualViewId - HEADER_ID - 1;
+        if (index < 0 || index >= mTargets.size()) {
+            return null;
+        }
+        return mTargets.get(index);
+    }
+
+    private void initNode(AccessibilityNodeInfo info, int virtualViewId, View view) {
+        info.setPackageName(mHost.getContext().getPackageName());
+        info.setSource(mHost, virtualViewId);
+        info.setVisibleToUser(true);
+        if (mFocusedId == virtualViewId) {
+            info.setAccessibilityFocused(true);
+            info.addAction(AccessibilityNodeInfo.ACTION_CLEAR_ACCESSIBILITY_FOCUS);
+        } else {
+            info.addAction(AccessibilityNodeInfo.ACTION_ACCESSIBILITY_FOCUS);
+        }
+        Rect bounds = mTempRect;
+        getBoundsInHost(view, bounds);
+        info.setBoundsInParent(bounds);
+        mHost.getLocationOnScreen(mTempLocation);
+        bounds.offset(mTempLocation[0], mTempLocation[1]);
+        info.setBoundsInScreen(bounds);
+    }
+
+    /**
+     * @param view header或者header中的子view
+     * @param outRect view在列表坐标系中的位置
+     */
+    private void getBoundsInHost(View view, Rect outRect) {
+        View header = mHost.getPinnedHeaderForAccessibility();
+        int left = 0;
+        int top = 0;
+        View current = view;
+        while (current != null) {
+            left += current.getLeft() - current.getScrollX();
+            top += current.getTop() - current.getScrollY();
+            if (current == header) {
+                break;
+            }
+            ViewParent parent = current.getParent();
+            current = parent instanceof View ? (View) parent : null;
+        }
+        outRect.set(left, top, left + view.getWidth(), top + view.getHeight());
+    }
+
+    private void collectTargets(View header) {
+        mTargets.clear();
+        if (header instanceof ViewGroup) {
+            collectTargets((ViewGroup) header);
+        }
+    }
+
+    private void collectTargets(ViewGroup parent) {
+        for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+            View child = parent.getChildAt(i);
+            if (child.getVisibility() != View.VISIBLE) {
+                continue;
+            }
+            if (child.isClickable()) {
+                mTargets.add(child);
+            } else if (child instanceof ViewGroup) {
+                collectTargets((ViewGroup) child);
+            }
+        }
+    }
+
+    /**
+     * @param header
+     * @return header中不可点击部分的文字，用作header的描述
+     */
+    private CharSequence getDescription(View header) {
+        if (!TextUtils.isEmpty(header.getContentDescription())) {
+            return header.getContentDescription();
+        }
+        StringBuilder builder = new StringBuilder();
+        appendText(header, builder);
+        return builder.toString();
+    }
+
+    private void appendText(View view, StringBuilder builder) {
+        if (view.getVisibility() != View.VISIBLE || mTargets.contains(view)) {
+            return;
+        }
+        CharSequence text = view.getContentDescription();
+        if (TextUtils.isEmpty(text) && view instanceof TextView) {
+            text = ((TextView) view).getText();
+        }
+        if (!TextUtils.isEmpty(text)) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(text);
+        } else if (view instanceof ViewGroup) {
+            ViewGroup parent = (ViewGroup) view;
+            for (int i = 0, count = parent.getChildCount(); i < count; i++) {
+                appendText(parent.getChildAt(i), builder);
+            }
+        }
+    }
+
+    private void sendEvent(int virtualViewId, int eventType) {
+        ViewParent parent = mHost.getParent();
+        if (parent == null || !mManager.isEnabled()) {
+            return;
+        }
+        AccessibilityEvent event = AccessibilityEvent.obtain(eventType);
+        event.setPackageName(mHost.getContext().getPackageName());
+        event.setSource(mHost, virtualViewId);
+        View view = getVirtualView(virtualViewId);
+        if (view != null) {
+            event.setClassName(view.getClass().getName());
+            if (virtualViewId == HEADER_ID) {
+                event.setContentDescription(getDescription(view));
+            } else {
+                if (view instanceof TextView) {
+                    event.getText().add(((TextView) view).getText());
+                }
+                event.setContentDescription(view.getContentDescription());
+                if (view instanceof Checkable) {
+                    event.setChecked(((Checkable) view).isChecked());
+                }
+            }
+        }
+        parent.requestSendAccessibilityEvent(mHost, event);
+    }
+}
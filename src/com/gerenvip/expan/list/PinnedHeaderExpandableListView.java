@@ -1,15 +1,24 @@
 package com.gerenvip.expan.list;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeProvider;
 import android.widget.AbsListView;
+import android.widget.ExpandableListAdapter;
 import android.widget.ExpandableListView;
+import android.widget.HeterogeneousExpandableList;
+import android.widget.ImageView;
 
 /**
  * 分组view可以悬停的ExpandableListView
@@ -19,6 +28,8 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
 
 
     private static final String TAG = "PinnedHeaderExpandableListView";
+    //API 18以上通过ViewGroupOverlay挂载悬停的view，使其拥有真正的parent
+    private static final boolean USE_OVERLAY = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
     private boolean mActionDownHappened = false;
 
     public interface OnHeaderUpdateListener {
@@ -28,18 +39,105 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
          */
         public View getPinnedHeader();
 
+        /**
+         * 注意：如果更新后header的高度会变化(例如文字换行)，需要调用{@link #notifyPinnedHeaderChanged()}，
+         * 否则header沿用缓存的测量结果
+         */
         public void updatePinnedHeader(View headerView, int firstVisibileGroupPos);
     }
 
+    public interface OnFooterUpdateListener {
+        /**
+         * 返回一个悬停在底部的view对象
+         * 注意：view必须要有LayoutParams
+         */
+        public View getPinnedFooter();
+
+        /**
+         * @param footerView
+         * @param groupPos   下一个还没有出现在列表中的组，如果要显示当前组的汇总，使用groupPos - 1
+         */
+        public void updatePinnedFooter(View footerView, int groupPos);
+    }
+
+    /**
+     * 快速滑动时的轻量绑定约定，由adapter或OnHeaderUpdateListener实现
+     * 进入轻量模式后，getGroupView/getChildView/updatePinnedHeader只需要做占位绑定(文字等)，
+     * 跳过图片加载、设置监听等耗时操作；滑动停止后可见条目和header会被重新完整绑定一次
+     */
+    public interface OnBindModeChangeListener {
+        /**
+         * @param fastBind true:进入轻量绑定模式 false:恢复完整绑定
+         */
+        public void onBindModeChanged(boolean fastBind);
+    }
+
+    //默认的轻量绑定速度阈值，单位：条目/秒
+    private static final float DEFAULT_FAST_BIND_VELOCITY = 20f;
+
+    //只悬停顶部header
+    public static final int PIN_MODE_HEADER = 1;
+    //只悬停底部footer
+    public static final int PIN_MODE_FOOTER = 1 << 1;
+    //顶部和底部同时悬停
+    public static final int PIN_MODE_BOTH = PIN_MODE_HEADER | PIN_MODE_FOOTER;
+
+    private int mPinMode = PIN_MODE_HEADER;
+
     private OnScrollListener mScrollListener;
+    private RecyclerListener mRecyclerListener;
+    private ImageLoader mImageLoader;
+    private int mScrollState = SCROLL_STATE_IDLE;
+    //滑动速度，单位：条目/秒
+    private float mScrollVelocity;
+    private int mLastFirstVisibleItem;
+    private long mLastScrollTime;
+    private float mFastBindVelocity = DEFAULT_FAST_BIND_VELOCITY;
+    private boolean mFastBinding = false;
+    //外部设置的adapter，多列模式下实际交给ExpandableListView的是包装后的ColumnPackingAdapter
+    private ExpandableListAdapter mSourceAdapter;
+    //每一行放置的子条目个数
+    private int mChildColumnCount = 1;
+    private OnChildClickListener mChildClickListener;
+    //最近一次触摸的x坐标，用于判断多列模式下点击的是哪一列
+    private int mLastTouchX;
+    //下一次子条目点击是否来自触摸(轻触抬手)，按键和无障碍服务的点击没有触摸坐标，mLastTouchX已经过时
+    private boolean mClickFromTouch;
+    private SelectionModel mSelectionModel;
     private OnHeaderUpdateListener mHeaderUpdateListener;
+    private OnFooterUpdateListener mFooterUpdateListener;
     //headerView,悬停的headerview
     private View mHeaderView;
     //headerView width
     private int mHeaderWidth;
     //headerView height
     private int mHeaderHeight;
+    //header测量结果的缓存，只有宽度、header类型变化或者header自己请求布局时才重新测量
+    private boolean mHeaderMeasured = false;
+    private int mHeaderWidthMeasureSpec;
+    private int mHeaderHeightMeasureSpec;
+    private int mHeaderViewType;
+    //header当前显示的组
+    private int mHeaderGroupPos = INVALID_POSITION;
     private View mTouchTarget;
+    //footerView,悬停在底部的view
+    private View mFooterView;
+    private int mFooterWidth;
+    private int mFooterHeight;
+    private View mFooterTouchTarget;
+    private boolean mFooterActionDownHappened = false;
+    //为footer添加的bottom padding
+    private int mFooterPadding;
+    //调用者通过setClipToPadding(false)关闭了裁剪。父类构造函数读取xml属性时就会调用setClipToPadding，所以不能有初始值
+    private boolean mClipToPaddingDisabled;
+    private final Runnable mUpdateFooterPaddingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateFooterPadding();
+        }
+    };
+    //API 16以上把header作为虚拟view暴露给无障碍服务
+    private PinnedHeaderAccessibilityProvider mAccessibilityProvider;
 
     public PinnedHeaderExpandableListView(Context context) {
         super(context);
@@ -59,6 +157,277 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
     private void initViews() {
         setFadingEdgeLength(0);
         setOnScrollListener(this);
+        super.setOnChildClickListener(new OnChildClickListener() {
+            @Override
+            public boolean onChildClick(ExpandableListView parent, View v, int groupPosition, int childPosition, long id) {
+                return dispatchChildClick(v, groupPosition, childPosition, id);
+            }
+        });
+        super.setRecyclerListener(new RecyclerListener() {
+            @Override
+            public void onMovedToScrapHeap(View view) {
+                //convertView被回收时取消它上面还没完成的图片请求
+                if (mImageLoader != null) {
+                    mImageLoader.cancelAll(view);
+                }
+                if (mRecyclerListener != null) {
+                    mRecyclerListener.onMovedToScrapHeap(view);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void setAdapter(ExpandableListAdapter adapter) {
+        if (getExpandableListAdapter() instanceof ColumnPackingAdapter) {
+            ((ColumnPackingAdapter) getExpandableListAdapter()).release();
+        }
+        mSourceAdapter = adapter;
+        if (adapter != null && mChildColumnCount > 1) {
+            adapter = new ColumnPackingAdapter(adapter, mChildColumnCount);
+        }
+        super.setAdapter(adapter);
+    }
+
+    /**
+     * 设置每一行放置的子条目个数，大于1时同一组的N个子条目共用一行(组内网格)
+     * 多列模式下ExpandableListView本身的方法(getExpandableListPosition等)返回的子条目位置是行号，
+     * {@link OnChildClickListener}收到的仍然是原adapter中的子条目位置和被点击的那一格view
+     *
+     * @param columnCount
+     */
+    public void setChildColumnCount(int columnCount) {
+        if (columnCount < 1) {
+            throw new IllegalArgumentException("columnCount must be >= 1");
+        }
+        if (mChildColumnCount == columnCount) {
+            return;
+        }
+        int oldColumnCount = mChildColumnCount;
+        mChildColumnCount = columnCount;
+        ExpandableListAdapter current = getExpandableListAdapter();
+        if (mSourceAdapter == null) {
+            return;
+        }
+        if (oldColumnCount > 1 && columnCount > 1) {
+            //已经是多列模式，只需要修改列数
+            ((ColumnPackingAdapter) current).setColumnCount(columnCount);
+            return;
+        }
+        //需要更换adapter，更换后展开状态会被重置，所以先记录再恢复
+        int groupCount = mSourceAdapter.getGroupCount();
+        boolean[] expanded = new boolean[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            expanded[i] = isGroupExpanded(i);
+        }
+        setAdapter(mSourceAdapter);
+        for (int i = 0; i < groupCount; i++) {
+            if (expanded[i]) {
+                expandGroup(i);
+            }
+        }
+    }
+
+    /**
+     * 一次展开[start, end)之间的组，用于分批加载后展开新追加的组，应在adapter的notifyDataSetChanged之前调用
+     * ExpandableListView内部的connector直接从adapter读取组的个数，所以新追加的组不需要先通知就可以展开；
+     * 每展开一组connector只刷新一次展开信息(遍历已展开的组，不遍历子条目)，列表的requestLayout会合并，
+     * 下一帧只有一次measure和layout，悬停的header/footer也只刷新一次
+     *
+     * @param start
+     * @param end
+     */
+    public void expandGroups(int start, int end) {
+        for (int i = start; i < end; i++) {
+            expandGroup(i);
+        }
+    }
+
+    public int getChildColumnCount() {
+        return mChildColumnCount;
+    }
+
+    @Override
+    public void setOnChildClickListener(OnChildClickListener onChildClickListener) {
+        mChildClickListener = onChildClickListener;
+    }
+
+    /**
+     * 多列模式下找到被点击的那一格，换算成原adapter中的子条目位置：
+     * 触摸点击按触摸位置查找，按键(D-pad)和无障碍服务的点击使用获得焦点或被选中的格子，都没有时使用第一格
+     */
+    private boolean dispatchChildClick(View v, int groupPosition, int childPosition, long id) {
+        boolean fromTouch = mClickFromTouch;
+        mClickFromTouch = false;
+        if (mChildClickListener == null) {
+            return false;
+        }
+        if (!(getExpandableListAdapter() instanceof ColumnPackingAdapter) || !(v instanceof ViewGroup)) {
+            return mChildClickListener.onChildClick(this, v, groupPosition, childPosition, id);
+        }
+        ColumnPackingAdapter adapter = (ColumnPackingAdapter) getExpandableListAdapter();
+        ViewGroup row = (ViewGroup) v;
+        int column = fromTouch ? getColumnAt(row, mLastTouchX - row.getLeft()) : getFocusedColumn(row);
+        if (column == INVALID_POSITION || ColumnPackingAdapter.isPlaceholder(row.getChildAt(column))) {
+            return false;
+        }
+        int position = adapter.getChildPosition(childPosition, column);
+        return mChildClickListener.onChildClick(this, row.getChildAt(column), groupPosition, position,
+                mSourceAdapter.getChildId(groupPosition, position));
+    }
+
+    /**
+     * @param row
+     * @param x   行内的x坐标
+     * @return x所在的格子，没有时返回INVALID_POSITION
+     */
+    private static int getColumnAt(ViewGroup row, int x) {
+        for (int column = 0, count = row.getChildCount(); column < count; column++) {
+            View cell = row.getChildAt(column);
+            if (x >= cell.getLeft() && x < cell.getRight()) {
+                return column;
+            }
+        }
+        return INVALID_POSITION;
+    }
+
+    /**
+     * @param row
+     * @return 获得焦点或被选中的格子，都没有时返回第一格(与行的id一致)
+     */
+    private static int getFocusedColumn(ViewGroup row) {
+        for (int column = 0, count = row.getChildCount(); column < count; column++) {
+            View cell = row.getChildAt(column);
+            if (cell.hasFocus() || cell.isSelected()) {
+                return column;
+            }
+        }
+        return row.getChildCount() > 0 ? 0 : INVALID_POSITION;
+    }
+
+    @Override
+    public void setRecyclerListener(RecyclerListener listener) {
+        mRecyclerListener = listener;
+    }
+
+    /**
+     * 设置分组条目、子条目和悬停header共用的图片加载器
+     * adapter和OnHeaderUpdateListener通过{@link #getImageLoader()}加载图片，条目被回收时自动取消请求
+     *
+     * @param imageLoader
+     */
+    public void setImageLoader(ImageLoader imageLoader) {
+        if (mImageLoader != null) {
+            mImageLoader.setOnImageSetListener(null);
+        }
+        mImageLoader = imageLoader;
+        if (imageLoader == null) {
+            return;
+        }
+        imageLoader.setOnImageSetListener(new ImageLoader.OnImageSetListener() {
+            @Override
+            public void onImageSet(ImageView imageView) {
+                //API 18以下header和footer没有parent，ImageView的invalidate传不到列表，需要列表来重绘
+                if (isHeaderPinned() && isDescendant(mHeaderView, imageView)) {
+                    invalidatePinnedHeader();
+                } else if (isFooterPinned() && isDescendant(mFooterView, imageView)) {
+                    invalidatePinnedFooter();
+                }
+            }
+        });
+    }
+
+    private static boolean isDescendant(View ancestor, View view) {
+        while (view != null) {
+            if (view == ancestor) {
+                return true;
+            }
+            ViewParent parent = view.getParent();
+            view = parent instanceof View ? (View) parent : null;
+        }
+        return false;
+    }
+
+    public ImageLoader getImageLoader() {
+        return mImageLoader;
+    }
+
+    /**
+     * 设置多选模型，选中状态变化时只重新绑定可见的相关条目和悬停的header，不会重新布局整个列表
+     * adapter和OnHeaderUpdateListener通过{@link #getSelectionModel()}显示选中状态
+     *
+     * @param selectionModel
+     */
+    public void setSelectionModel(SelectionModel selectionModel) {
+        if (mSelectionModel != null) {
+            mSelectionModel.setOnSelectionChangeListener(null);
+        }
+        mSelectionModel = selectionModel;
+        if (selectionModel == null) {
+            return;
+        }
+        selectionModel.setOnSelectionChangeListener(new SelectionModel.OnSelectionChangeListener() {
+            @Override
+            public void onSelectionChanged(long groupId) {
+                if (getExpandableListAdapter() != null) {
+                    rebindVisibleViews(getExpandableListAdapter(), false, groupId);
+                }
+                refreshPinnedHeaderContent();
+            }
+
+            @Override
+            public void onSelectionCleared() {
+                if (getExpandableListAdapter() != null) {
+                    rebindVisibleViews(getExpandableListAdapter());
+                }
+                refreshPinnedHeaderContent();
+            }
+        });
+    }
+
+    public SelectionModel getSelectionModel() {
+        return mSelectionModel;
+    }
+
+    /**
+     * 重新调用updatePinnedHeader更新header的内容，并只重绘header的区域
+     */
+    private void refreshPinnedHeaderContent() {
+        if (!isHeaderPinned() || mHeaderUpdateListener == null || mHeaderGroupPos == INVALID_POSITION) {
+            return;
+        }
+        mHeaderUpdateListener.updatePinnedHeader(mHeaderView, mHeaderGroupPos);
+        invalidatePinnedHeader();
+    }
+
+    /**
+     * @return 当前的滑动状态，{@link #SCROLL_STATE_IDLE}等
+     */
+    public int getScrollState() {
+        return mScrollState;
+    }
+
+    /**
+     * @return 当前滑动速度，单位：条目/秒，停止时为0
+     */
+    public float getScrollVelocity() {
+        return mScrollVelocity;
+    }
+
+    /**
+     * 设置进入轻量绑定的速度阈值，fling时速度超过该值，{@link OnBindModeChangeListener}会收到通知
+     *
+     * @param itemsPerSecond 单位：条目/秒，小于等于0时不再进入轻量绑定
+     */
+    public void setFastBindVelocity(float itemsPerSecond) {
+        mFastBindVelocity = itemsPerSecond;
+    }
+
+    /**
+     * @return 是否处于轻量绑定模式
+     */
+    public boolean isFastBinding() {
+        return mFastBinding;
     }
 
     /**
@@ -76,6 +445,8 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
 
     public void setOnHeaderUpdateListener(OnHeaderUpdateListener listener) {
         mHeaderUpdateListener = listener;
+        detachPinnedView(mHeaderView);
+        mHeaderMeasured = false;
         //如果listener为null，初始化headerview
         if (listener == null) {
             mHeaderView = null;
@@ -84,9 +455,13 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
         }
 
         mHeaderView = listener.getPinnedHeader();
+        if (isHeaderPinned()) {
+            attachPinnedView(mHeaderView);
+        }
         int firstVisiblePos = getFirstVisiblePosition();
         //通过fisrVisiblePos找到组的位置
         int firstVisibleGroupPos = getPackedPositionGroup(getExpandableListPosition(firstVisiblePos));
+        mHeaderGroupPos = firstVisibleGroupPos;
         listener.updatePinnedHeader(mHeaderView, firstVisibleGroupPos);
         //请求重新布局layou，会触发measure()过程 和 layout()
         requestLayout();
@@ -94,35 +469,261 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
         postInvalidate();
     }
 
+    public void setOnFooterUpdateListener(OnFooterUpdateListener listener) {
+        mFooterUpdateListener = listener;
+        detachPinnedView(mFooterView);
+        if (listener == null) {
+            mFooterView = null;
+            mFooterWidth = mFooterHeight = 0;
+            //去掉footer占用的bottom padding
+            updateFooterPadding();
+            return;
+        }
+
+        mFooterView = listener.getPinnedFooter();
+        if (isFooterPinned()) {
+            attachPinnedView(mFooterView);
+        }
+        updateFooterPadding();
+        //与refreshFooter相同，footer显示footer上方最后一个条目的下一组；还没有布局或者后面没有组时，等第一次布局再刷新
+        int footerGroupPos = getFooterGroupPos(getExpandableListPosition(getFooterAnchorPosition(getLastVisiblePosition())));
+        if (footerGroupPos != INVALID_POSITION) {
+            listener.updatePinnedFooter(mFooterView, footerGroupPos);
+        }
+        requestLayout();
+        postInvalidate();
+    }
+
+    /**
+     * 把悬停的view挂到列表上。API 18以上使用ViewGroupOverlay，view有了真正的parent，
+     * 它内部的invalidate()(图片加载、ripple等)会传递上来，并且只重绘该view所在的区域；
+     * 低版本view仍然没有parent，由dispatchDraw手动绘制，内容变化后需要调用{@link #invalidatePinnedHeader()}
+     *
+     * @param view
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void attachPinnedView(View view) {
+        if (USE_OVERLAY && view != null) {
+            getOverlay().add(view);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void detachPinnedView(View view) {
+        if (USE_OVERLAY && view != null) {
+            getOverlay().remove(view);
+        }
+    }
+
+    /**
+     * 只重绘悬停的header所在的区域
+     * 低版本上header没有parent，header内容变化(例如异步加载的图片)后调用此方法刷新，而不是重绘整个列表
+     */
+    public void invalidatePinnedHeader() {
+        if (isHeaderPinned()) {
+            invalidatePinnedView(mHeaderView);
+        }
+    }
+
+    /**
+     * 只重绘悬停的footer所在的区域
+     */
+    public void invalidatePinnedFooter() {
+        if (isFooterPinned()) {
+            invalidatePinnedView(mFooterView);
+        }
+    }
+
+    private void invalidatePinnedView(View view) {
+        if (USE_OVERLAY) {
+            //已经挂在overlay上，invalidate会自己传递到列表，并且只带着view的区域
+            view.invalidate();
+        } else {
+            invalidate(view.getLeft(), view.getTop(), view.getRight(), view.getBottom());
+        }
+    }
+
+    /**
+     * 设置悬停模式
+     *
+     * @param pinMode {@link #PIN_MODE_HEADER}, {@link #PIN_MODE_FOOTER} 或 {@link #PIN_MODE_BOTH}
+     */
+    public void setPinMode(int pinMode) {
+        if (mPinMode == pinMode) {
+            return;
+        }
+        detachPinnedView(mHeaderView);
+        detachPinnedView(mFooterView);
+        mPinMode = pinMode;
+        if (isHeaderPinned()) {
+            attachPinnedView(mHeaderView);
+        }
+        if (isFooterPinned()) {
+            attachPinnedView(mFooterView);
+        }
+        updateFooterPadding();
+        requestLayout();
+        postInvalidate();
+    }
+
+    public int getPinMode() {
+        return mPinMode;
+    }
+
+    /**
+     * footer悬停时给列表加上和footer一样高的bottom padding，列表滑到底部时最后一个条目不会被footer挡住；
+     * 同时关闭clipToPadding，让刚出现的条目可以画在footer下面的padding区域里，去掉footer后恢复调用者的设置
+     * 只在footer、悬停模式或者footer高度变化时调用，不在onMeasure中调用：setPadding会请求重新布局
+     */
+    private void updateFooterPadding() {
+        int footerPadding = isFooterPinned() ? measureFooterHeight() : 0;
+        if (footerPadding == mFooterPadding) {
+            return;
+        }
+        super.setClipToPadding(footerPadding == 0 && !mClipToPaddingDisabled);
+        setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight(),
+                getPaddingBottom() - mFooterPadding + footerPadding);
+        mFooterPadding = footerPadding;
+    }
+
+    /**
+     * @return footer的高度，列表还没有宽度时按不限制宽度测量
+     */
+    private int measureFooterHeight() {
+        int width = getWidth();
+        int widthMeasureSpec = width > 0 ? MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY)
+                : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        measureChild(mFooterView, widthMeasureSpec, MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        mFooterWidth = mFooterView.getMeasuredWidth();
+        mFooterHeight = mFooterView.getMeasuredHeight();
+        return mFooterHeight;
+    }
+
+    @Override
+    public void setClipToPadding(boolean clipToPadding) {
+        mClipToPaddingDisabled = !clipToPadding;
+        //footer占用bottom padding时必须关闭裁剪，先记录下来，去掉footer时再恢复
+        if (mFooterPadding == 0) {
+            super.setClipToPadding(clipToPadding);
+        }
+    }
+
+    private boolean isHeaderPinned() {
+        return mHeaderView != null && (mPinMode & PIN_MODE_HEADER) != 0;
+    }
+
+    private boolean isFooterPinned() {
+        return mFooterView != null && (mPinMode & PIN_MODE_FOOTER) != 0;
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (isFooterPinned()) {
+            //与measureFooterHeight相同，高度不受列表限制
+            measureChild(mFooterView, widthMeasureSpec, MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+            mFooterWidth = mFooterView.getMeasuredWidth();
+            mFooterHeight = mFooterView.getMeasuredHeight();
+            if (mFooterHeight != mFooterPadding) {
+                //宽度变化使footer的高度也变了，measure中不能修改padding，放到下一帧
+                removeCallbacks(mUpdateFooterPaddingRunnable);
+                post(mUpdateFooterPaddingRunnable);
+            }
+        }
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        if (mHeaderView == null) {
+        if (!isHeaderPinned()) {
             return;//如果没有headerview，就不需要重新测量，所以取消
         }
+        measureHeader(widthMeasureSpec, heightMeasureSpec, false);
+    }
+
+    /**
+     * 测量header。StickyLayout拖动时每一帧都会让列表重新measure，而header的大小只和宽度以及header类型有关，
+     * 所以宽度、类型都没有变化，并且header自己没有请求布局时，直接使用上次的结果
+     *
+     * @param widthMeasureSpec
+     * @param heightMeasureSpec
+     * @param force             忽略缓存，强制重新测量
+     */
+    private void measureHeader(int widthMeasureSpec, int heightMeasureSpec, boolean force) {
+        int viewType = getHeaderViewType(mHeaderGroupPos);
+        if (!force && mHeaderMeasured && widthMeasureSpec == mHeaderWidthMeasureSpec
+                && viewType == mHeaderViewType && !mHeaderView.isLayoutRequested()) {
+            return;
+        }
         measureChild(mHeaderView, widthMeasureSpec, heightMeasureSpec);
         mHeaderWidth = mHeaderView.getMeasuredWidth();
         mHeaderHeight = mHeaderView.getMeasuredHeight();
+        mHeaderWidthMeasureSpec = widthMeasureSpec;
+        mHeaderHeightMeasureSpec = heightMeasureSpec;
+        mHeaderViewType = viewType;
+        mHeaderMeasured = true;
+    }
+
+    /**
+     * @param groupPos
+     * @return 组的类型，adapter没有实现{@link HeterogeneousExpandableList}时都是同一种类型
+     */
+    private int getHeaderViewType(int groupPos) {
+        ExpandableListAdapter adapter = getExpandableListAdapter();
+        if (groupPos == INVALID_POSITION || !(adapter instanceof HeterogeneousExpandableList)) {
+            return 0;
+        }
+        return ((HeterogeneousExpandableList) adapter).getGroupType(groupPos);
+    }
+
+    /**
+     * 通知header的内容发生了变化，可能影响header的大小(例如文字长度导致高度变化)
+     * 只重新测量和布局header本身，并重绘header所在的区域，不会让整个列表重新布局
+     */
+    public void notifyPinnedHeaderChanged() {
+        if (!isHeaderPinned() || !mHeaderMeasured) {
+            //还没有测量过，等待列表下一次measure
+            mHeaderMeasured = false;
+            return;
+        }
+        int oldWidth = mHeaderWidth;
+        int oldHeight = mHeaderHeight;
+        measureHeader(mHeaderWidthMeasureSpec, mHeaderHeightMeasureSpec, true);
+        int top = mHeaderView.getTop();
+        mHeaderView.layout(0, top, mHeaderWidth, top + mHeaderHeight);
+        //header变小时，原来的区域也需要重绘
+        invalidate(0, top, Math.max(oldWidth, mHeaderWidth), top + Math.max(oldHeight, mHeaderHeight));
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
         super.onLayout(changed, l, t, r, b);
-        if (mHeaderView == null) {
+        if (isFooterPinned()) {
+            if (getChildCount() > 0) {
+                int anchorPos = getFooterAnchorPosition(getLastVisiblePosition());
+                refreshFooter(anchorPos, getExpandableListPosition(anchorPos));
+            } else {
+                int bottom = getHeight();
+                mFooterView.layout(0, bottom - mFooterHeight, mFooterWidth, bottom);
+            }
+        }
+        if (!isHeaderPinned()) {
             return;
         }
+        //保持header当前被推上去的位置，高度不变
         int top = mHeaderView.getTop();
-        mHeaderView.layout(0, top, mHeaderWidth, mHeaderHeight);
+        mHeaderView.layout(0, top, mHeaderWidth, top + mHeaderHeight);
     }
 
     @Override
     protected void dispatchDraw(Canvas canvas) {
         //负责重新绘制所有的子view，但不包括headerview
         super.dispatchDraw(canvas);
-        //绘制后添加的headerview
-        if (mHeaderView != null) {
+        //绘制后添加的headerview，挂在overlay上时由overlay负责绘制
+        if (USE_OVERLAY) {
+            return;
+        }
+        if (isHeaderPinned()) {
             drawChild(canvas, mHeaderView, getDrawingTime());
         }
+        if (isFooterPinned() && mFooterView.getVisibility() == VISIBLE) {
+            drawChild(canvas, mFooterView, getDrawingTime());
+        }
     }
 
     /**
@@ -136,10 +737,30 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
     public boolean dispatchTouchEvent(MotionEvent ev) {
         int x = (int) ev.getX();
         int y = (int) ev.getY();
+        mLastTouchX = x;
         //两个坐标点变成一个位置
         int pos = pointToPosition(x, y);
+        //当触摸位置是在footerview的位置时，只处理footer内部可点击view的点击事件
+        if (isFooterPinned() && mFooterView.getVisibility() == VISIBLE
+                && y >= mFooterView.getTop() && y <= mFooterView.getBottom()) {
+            //getTouchTarget按照view自身坐标判断，需要换算到footer内部的坐标
+            int footerY = y - mFooterView.getTop();
+            if (ev.getAction() == MotionEvent.ACTION_DOWN) {
+                mFooterTouchTarget = getTouchTarget(mFooterView, x, footerY);
+                mFooterActionDownHappened = true;
+            } else if (ev.getAction() == MotionEvent.ACTION_UP) {
+                View touchTarget = getTouchTarget(mFooterView, x, footerY);
+                if (mFooterActionDownHappened && mFooterTouchTarget != null && touchTarget == mFooterTouchTarget
+                        && mFooterTouchTarget.isClickable()) {
+                    mFooterTouchTarget.performClick();
+                    invalidatePinnedFooter();
+                }
+                mFooterActionDownHappened = false;
+            }
+            return true;
+        }
         //当触摸位置是在headerview的位置时
-        if (mHeaderView != null && y >= mHeaderView.getTop() && y <= mHeaderView.getBottom()) {
+        if (isHeaderPinned() && y >= mHeaderView.getTop() && y <= mHeaderView.getBottom()) {
             if (ev.getAction() == MotionEvent.ACTION_DOWN) {
                 //找到headerview中touch事件的处理者(子view)
                 mTouchTarget = getTouchTarget(mHeaderView, x, y);
@@ -151,8 +772,8 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
                 if (touchTarget == mTouchTarget && mTouchTarget.isClickable()) {
                     //回调onclicklistener，通知用户，点击了
                     mTouchTarget.performClick();
-                    //比较需要draw的区域，必须在ui线程调用，该方法最终会调用onDraw(Canvas)
-                    invalidate(new Rect(0, 0, mHeaderWidth, mHeaderHeight));
+                    //只重绘header的区域，必须在ui线程调用，该方法最终会调用onDraw(Canvas)
+                    invalidatePinnedHeader();
                 } else {//抬手时处理touch事件的view不是down的时候记录的view
                     int groupPosition = getPackedPositionGroup(getExpandableListPosition(pos));
                     if (groupPosition != INVALID_POSITION && mActionDownHappened) {
@@ -169,9 +790,98 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
             }
             return true;
         }
+        //只有落在条目上的轻触抬手会产生子条目点击，滑动时滑动状态的变化会清除这个标记
+        int action = ev.getAction() & MotionEvent.ACTION_MASK;
+        if (action == MotionEvent.ACTION_UP) {
+            mClickFromTouch = true;
+        } else if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_CANCEL) {
+            mClickFromTouch = false;
+        }
         return super.dispatchTouchEvent(ev);
     }
 
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        //按键产生的点击没有触摸位置
+        mClickFromTouch = false;
+        return super.dispatchKeyEvent(event);
+    }
+
+    /**
+     * 滚动时把当前悬停的header内容一起报告给无障碍服务，
+     * 否则header既不是真正的子view，也不会被朗读
+     *
+     * @param event
+     * @return
+     */
+    @Override
+    public boolean dispatchPopulateAccessibilityEvent(AccessibilityEvent event) {
+        boolean handled = super.dispatchPopulateAccessibilityEvent(event);
+        if (event.getEventType() == AccessibilityEvent.TYPE_VIEW_SCROLLED && isHeaderPinned()
+                && mHeaderView.getVisibility() == VISIBLE) {
+            handled |= mHeaderView.dispatchPopulateAccessibilityEvent(event);
+        }
+        return handled;
+    }
+
+    /**
+     * API 16以上通过虚拟view把悬停的header(包括其中可点击的子view)暴露给无障碍服务，
+     * TalkBack可以朗读、聚焦并点击它们；API 16以下只有滚动时的朗读
+     * 注意：header不能获得键盘(方向键)焦点
+     *
+     * @return
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public AccessibilityNodeProvider getAccessibilityNodeProvider() {
+        if (!isHeaderPinned()) {
+            return super.getAccessibilityNodeProvider();
+        }
+        if (mAccessibilityProvider == null) {
+            mAccessibilityProvider = new PinnedHeaderAccessibilityProvider(this);
+        }
+        return mAccessibilityProvider;
+    }
+
+    /**
+     * 触摸浏览模式下header区域的hover事件交给虚拟view处理
+     *
+     * @param event
+     * @return
+     */
+    @Override
+    public boolean dispatchHoverEvent(MotionEvent event) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && mAccessibilityProvider != null
+                && isHeaderPinned() && mAccessibilityProvider.dispatchHoverEvent(event)) {
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    /**
+     * @return 需要暴露给无障碍服务的header，没有显示header时返回null
+     */
+    View getPinnedHeaderForAccessibility() {
+        if (!isHeaderPinned() || mHeaderView.getVisibility() != VISIBLE || mHeaderGroupPos == INVALID_POSITION) {
+            return null;
+        }
+        return mHeaderView;
+    }
+
+    /**
+     * 展开或者收起header当前显示的组，与点击header的行为一致
+     */
+    void togglePinnedHeaderGroup() {
+        if (mHeaderGroupPos == INVALID_POSITION) {
+            return;
+        }
+        if (isGroupExpanded(mHeaderGroupPos)) {
+            collapseGroup(mHeaderGroupPos);
+        } else {
+            expandGroup(mHeaderGroupPos);
+        }
+    }
+
     /**
      * 获取具有touch事件处理权的view
      *
@@ -228,7 +938,17 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
 
     @Override
     public void onScrollStateChanged(AbsListView view, int scrollState) {
-        if (mHeaderView != null && scrollState == SCROLL_STATE_IDLE) {
+        mScrollState = scrollState;
+        //滑动之后的抬手不会产生点击
+        mClickFromTouch = false;
+        if (scrollState == SCROLL_STATE_IDLE) {
+            mScrollVelocity = 0;
+        }
+        //手指按下或者停止时结束轻量绑定
+        if (scrollState != SCROLL_STATE_FLING && mFastBinding) {
+            setFastBinding(false);
+        }
+        if (isHeaderPinned() && scrollState == SCROLL_STATE_IDLE) {
             int firstVisiblePos = getFirstVisiblePosition();
             if (firstVisiblePos == 0) {
                 mHeaderView.layout(0, 0, mHeaderWidth, mHeaderHeight);
@@ -244,8 +964,13 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
     public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
         Log.e(TAG, "expandaleListview totalItemCount=" + totalItemCount);
 
+        updateScrollVelocity(firstVisibleItem);
+        if (!mFastBinding && mScrollState == SCROLL_STATE_FLING && mFastBindVelocity > 0
+                && mScrollVelocity > mFastBindVelocity) {
+            setFastBinding(true);
+        }
         if (totalItemCount > 0) {
-            refreshHeader();
+            refreshPinnedViews(firstVisibleItem, visibleItemCount);
         }
         if (mScrollListener != null) {
             mScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
@@ -253,17 +978,140 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
     }
 
     /**
-     * 刷新悬停的header
+     * 第一个可见条目发生变化时，根据距离上次变化的时间计算滑动速度
+     *
+     * @param firstVisibleItem
+     */
+    private void updateScrollVelocity(int firstVisibleItem) {
+        if (firstVisibleItem == mLastFirstVisibleItem) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        long duration = now - mLastScrollTime;
+        if (duration > 0 && mScrollState != SCROLL_STATE_IDLE) {
+            mScrollVelocity = Math.abs(firstVisibleItem - mLastFirstVisibleItem) * 1000f / duration;
+        }
+        mLastFirstVisibleItem = firstVisibleItem;
+        mLastScrollTime = now;
+    }
+
+    /**
+     * 切换轻量绑定模式，恢复完整绑定时只重新绑定当前可见的条目和header
+     *
+     * @param fastBinding
      */
-    private void refreshHeader() {
-        if (mHeaderView == null) {
+    private void setFastBinding(boolean fastBinding) {
+        ExpandableListAdapter adapter = mSourceAdapter;
+        OnBindModeChangeListener adapterListener = adapter instanceof OnBindModeChangeListener
+                ? (OnBindModeChangeListener) adapter : null;
+        OnBindModeChangeListener headerListener = mHeaderUpdateListener instanceof OnBindModeChangeListener
+                ? (OnBindModeChangeListener) mHeaderUpdateListener : null;
+        if (adapterListener == null && headerListener == null) {
+            //没有人关心绑定模式，不需要切换，也就不需要重新绑定
+            return;
+        }
+        mFastBinding = fastBinding;
+        if (adapterListener != null) {
+            adapterListener.onBindModeChanged(fastBinding);
+        }
+        if (headerListener != null) {
+            headerListener.onBindModeChanged(fastBinding);
+        }
+        if (fastBinding) {
             return;
         }
+        if (adapterListener != null) {
+            //多列模式下要通过包装后的adapter按行重新绑定
+            rebindVisibleViews(getExpandableListAdapter());
+        }
+        if (isHeaderPinned()) {
+            int firstVisibleGroupPos = getPackedPositionGroup(getExpandableListPosition(getFirstVisiblePosition()));
+            mHeaderUpdateListener.updatePinnedHeader(mHeaderView, firstVisibleGroupPos);
+        }
+    }
+
+    private void rebindVisibleViews(ExpandableListAdapter adapter) {
+        rebindVisibleViews(adapter, true, 0);
+    }
 
+    /**
+     * 把可见的条目作为convertView交给adapter重新完整绑定，不会触发重新布局
+     * 要求adapter在getGroupView/getChildView中复用convertView
+     *
+     * @param adapter
+     * @param allGroups 为false时只重新绑定id为groupId的组中的条目
+     * @param groupId
+     */
+    private void rebindVisibleViews(ExpandableListAdapter adapter, boolean allGroups, long groupId) {
         int firstVisiblePos = getFirstVisiblePosition();
-        int pos = firstVisiblePos + 1;
-        int firstVisibleGroupPos = getPackedPositionGroup(getExpandableListPosition(firstVisiblePos));
-        int group = getPackedPositionGroup(getExpandableListPosition(pos));
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            View child = getChildAt(i);
+            long packed = getExpandableListPosition(firstVisiblePos + i);
+            int type = getPackedPositionType(packed);
+            int groupPos = getPackedPositionGroup(packed);
+            if (type == PACKED_POSITION_TYPE_NULL || (!allGroups && adapter.getGroupId(groupPos) != groupId)) {
+                continue;
+            }
+            if (type == PACKED_POSITION_TYPE_GROUP) {
+                adapter.getGroupView(groupPos, isGroupExpanded(groupPos), child, this);
+            } else if (type == PACKED_POSITION_TYPE_CHILD) {
+                int childPos = getPackedPositionChild(packed);
+                boolean isLastChild = childPos == adapter.getChildrenCount(groupPos) - 1;
+                adapter.getChildView(groupPos, childPos, isLastChild, child, this);
+            }
+        }
+    }
+
+    /**
+     * 刷新悬停的header和footer
+     * 两者共用同一次位置查找：header需要首个和第二个可见条目，footer只需要footer上方的最后一个条目，
+     * 所以同时悬停时每帧只多查找一次
+     *
+     * @param firstVisiblePos  onScroll传入的第一个可见条目
+     * @param visibleItemCount onScroll传入的可见条目个数
+     */
+    private void refreshPinnedViews(int firstVisiblePos, int visibleItemCount) {
+        boolean pinHeader = isHeaderPinned();
+        boolean pinFooter = isFooterPinned();
+        if (!pinHeader && !pinFooter) {
+            return;
+        }
+        int lastVisiblePos = firstVisiblePos + visibleItemCount - 1;
+        //只查找真正需要的位置：header需要首个和第二个可见条目，footer只需要footer上方的最后一个条目
+        long nextPacked = PACKED_POSITION_VALUE_NULL;
+        if (pinHeader) {
+            long firstPacked = getExpandableListPosition(firstVisiblePos);
+            nextPacked = getExpandableListPosition(firstVisiblePos + 1);
+            refreshHeader(getPackedPositionGroup(firstPacked), getPackedPositionGroup(nextPacked));
+        }
+        if (pinFooter) {
+            int anchorPos = getFooterAnchorPosition(lastVisiblePos);
+            long anchorPacked;
+            if (pinHeader && anchorPos == firstVisiblePos + 1) {
+                anchorPacked = nextPacked;
+            } else {
+                anchorPacked = getExpandableListPosition(anchorPos);
+            }
+            refreshFooter(anchorPos, anchorPacked);
+        }
+    }
+
+    /**
+     * 刷新悬停的header
+     *
+     * @param firstVisibleGroupPos 第一个可见条目所在的组
+     * @param group                第二个可见条目所在的组
+     */
+    private void refreshHeader(int firstVisibleGroupPos, int group) {
+        //header切换到了另一种类型的组，测量缓存失效
+        boolean typeChanged = false;
+        if (firstVisibleGroupPos != mHeaderGroupPos) {
+            mHeaderGroupPos = firstVisibleGroupPos;
+            typeChanged = mHeaderMeasured && getHeaderViewType(firstVisibleGroupPos) != mHeaderViewType;
+            if (mAccessibilityProvider != null) {
+                mAccessibilityProvider.onHeaderChanged();
+            }
+        }
         //Log.w(TAG, "refreshHeader firstVisibleGroupPos=" + firstVisibleGroupPos + "; group="+group);
         //Log.e(TAG, "child size=" + getChildCount());
         //这个时候该分组第一个可显示的条目是最后一个,即两个分组相遇啦
@@ -272,10 +1120,10 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
             // 所以getChileAt得到的是可见的item， 第0个真好被headerview盖住了，应该选取第1个条目距离父view的距离
             View view = getChildAt(1);
             if (view == null) {
+                //onScroll可能在子view还没有布局完成时回调，这时先按没有相遇处理，下一帧会再刷新
                 Log.w(TAG, "Warning:refreshHeader getChildAt(1)=null");
-            }
-            //Log.e(TAG, "view.getTop=" + view.getTop());
-            if (view.getTop() <= mHeaderHeight) {//如果到顶部的距离小于等于header的高度，说明header应该被挤上去
+                mHeaderView.layout(0, 0, mHeaderWidth, mHeaderHeight);
+            } else if (view.getTop() <= mHeaderHeight) {//如果到顶部的距离小于等于header的高度，说明header应该被挤上去
                 //说明悬浮的header正在推上去
                 int delta = mHeaderHeight - view.getTop();
                 //设置header相对父view的位置
@@ -293,6 +1141,73 @@ public class PinnedHeaderExpandableListView extends ExpandableListView implement
         if (mHeaderUpdateListener != null) {
             mHeaderUpdateListener.updatePinnedHeader(mHeaderView, firstVisibleGroupPos);
         }
+        if (typeChanged) {
+            notifyPinnedHeaderChanged();
+        }
 
     }
+
+    /**
+     * 刷新悬停的footer，与header的推上去逻辑对称：
+     * footer显示下一个还没有出现的组，固定在列表内容区域的底部(bottom padding中)；
+     * 当上一组的group条目刚从底部出现时，footer紧贴在该条目下方，随着它一起被推上来，
+     * 等到下一组真实的group条目出现时，footer恰好与它重合，然后换成再下一组
+     *
+     * @param anchorPos    footer上方最后一个条目的位置，见{@link #getFooterAnchorPosition(int)}
+     * @param anchorPacked 该条目的packed position
+     */
+    private void refreshFooter(int anchorPos, long anchorPacked) {
+        int pinnedTop = getHeight() - mFooterHeight;
+        int footerGroupPos = getFooterGroupPos(anchorPacked);
+        if (footerGroupPos == INVALID_POSITION) {
+            //后面已经没有其他组了
+            mFooterView.setVisibility(INVISIBLE);
+            return;
+        }
+        mFooterView.setVisibility(VISIBLE);
+        int top = pinnedTop;
+        if (getPackedPositionType(anchorPacked) == PACKED_POSITION_TYPE_GROUP) {
+            View view = getChildAt(anchorPos - getFirstVisiblePosition());
+            if (view != null && view.getBottom() > pinnedTop) {
+                //上一组的group条目还没有完全出现，footer被它压在下面
+                top = view.getBottom();
+            }
+        }
+        mFooterView.layout(0, top, mFooterWidth, top + mFooterHeight);
+
+        if (mFooterUpdateListener != null) {
+            mFooterUpdateListener.updatePinnedFooter(mFooterView, footerGroupPos);
+        }
+    }
+
+    /**
+     * 关闭了clipToPadding，列表会一直填充到footer下面的padding区域，最后一个可见条目可能完全被footer挡住，
+     * 所以footer以顶部在footer上方的最后一个条目为准。只从最后一个条目往前找，padding区域里最多只有几个条目
+     *
+     * @param lastVisiblePos 最后一个可见条目
+     * @return 顶部在footer上方的最后一个条目，还没有子view时返回lastVisiblePos
+     */
+    private int getFooterAnchorPosition(int lastVisiblePos) {
+        int pinnedTop = getHeight() - mFooterHeight;
+        int firstVisiblePos = getFirstVisiblePosition();
+        for (int i = Math.min(lastVisiblePos - firstVisiblePos, getChildCount() - 1); i >= 0; i--) {
+            if (getChildAt(i).getTop() < pinnedTop) {
+                return firstVisiblePos + i;
+            }
+        }
+        return lastVisiblePos;
+    }
+
+    /**
+     * @param lastPacked footer上方最后一个条目的packed position
+     * @return footer显示的组，即最后一个可见条目的下一组；没有可见条目或者后面已经没有组时返回{@link #INVALID_POSITION}
+     */
+    private int getFooterGroupPos(long lastPacked) {
+        int lastGroupPos = getPackedPositionGroup(lastPacked);
+        ExpandableListAdapter adapter = getExpandableListAdapter();
+        if (lastGroupPos == INVALID_POSITION || adapter == null || lastGroupPos + 1 >= adapter.getGroupCount()) {
+            return INVALID_POSITION;
+        }
+        return lastGroupPos + 1;
+    }
 }
@@ -0,0 +1,269 @@
+package com.gerenvip.expan.list;
+
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 跨分组的多选模型
+ * 以group的stable id为key，每一组用一个位图记录子条目(按组内位置)是否选中，并缓存选中个数，
+ * 与列表的扁平位置无关，所以展开、收起分组后不需要重新映射
+ * 整组全选/全不选只翻转一个标记，是O(1)的
+ */
+public class SelectionModel {
+
+    //整组都没有选中
+    public static final int STATE_NONE = 0;
+    //整组部分选中
+    public static final int STATE_PARTIAL = 1;
+    //整组全部选中
+    public static final int STATE_ALL = 2;
+
+    //所有状态保存在这一个key下的Bundle中，不会随分组个数增加往外层Bundle写入更多的key
+    private static final String KEY_SELECTION = "selection_model";
+    private static final String KEY_GROUP_IDS = "group_ids";
+    private static final String KEY_INVERTED = "inverted";
+    //所有组的位图首尾相接成一个数组，第i组占用[offsets[i], offsets[i + 1])
+    private static final String KEY_WORDS = "words";
+    private static final String KEY_OFFSETS = "offsets";
+
+    public interface OnSelectionChangeListener {
+        /**
+         * @param groupId 选中状态发生变化的组
+         */
+        public void onSelectionChanged(long groupId);
+
+        /**
+         * 所有组的选中状态都发生了变化
+         */
+        public void onSelectionCleared();
+    }
+
+    private final Map<Long, GroupSelection> mGroups = new HashMap<Long, GroupSelection>();
+    private OnSelectionChangeListener mListener;
+
+    public void setOnSelectionChangeListener(OnSelectionChangeListener listener) {
+        mListener = listener;
+    }
+
+    public boolean isSelected(long groupId, int childPosition) {
+        GroupSelection group = mGroups.get(groupId);
+        return group != null && group.isSelected(childPosition);
+    }
+
+    public void setSelected(long groupId, int childPosition, boolean selected) {
+        GroupSelection group = mGroups.get(groupId);
+        if (group == null) {
+            if (!selected) {
+                return;
+            }
+            group = new GroupSelection();
+            mGroups.put(groupId, group);
+        }
+        if (group.setSelected(childPosition, selected) && mListener != null) {
+            mListener.onSelectionChanged(groupId);
+        }
+    }
+
+    public void toggle(long groupId, int childPosition) {
+        setSelected(groupId, childPosition, !isSelected(groupId, childPosition));
+    }
+
+    /**
+     * 选中整组，O(1)
+     *
+     * @param groupId
+     */
+    public void selectAll(long groupId) {
+        GroupSelection group = mGroups.get(groupId);
+        if (group == null) {
+            group = new GroupSelection();
+            mGroups.put(groupId, group);
+        }
+        group.reset(true);
+        if (mListener != null) {
+            mListener.onSelectionChanged(groupId);
+        }
+    }
+
+    /**
+     * 取消整组的选中，O(1)
+     *
+     * @param groupId
+     */
+    public void clearAll(long groupId) {
+        if (mGroups.remove(groupId) != null && mListener != null) {
+            mListener.onSelectionChanged(groupId);
+        }
+    }
+
+    /**
+     * 取消所有组的选中
+     */
+    public void clear() {
+        mGroups.clear();
+        if (mListener != null) {
+            mListener.onSelectionCleared();
+        }
+    }
+
+    /**
+     * @param groupId
+     * @param childrenCount 该组子条目个数，整组选中时需要用它计算选中个数
+     * @return 该组选中的子条目个数
+     */
+    public int getSelectedCount(long groupId, int childrenCount) {
+        GroupSelection group = mGroups.get(groupId);
+        return group == null ? 0 : group.getSelectedCount(childrenCount);
+    }
+
+    /**
+     * 用于分组条目和悬停header上的三态checkbox
+     *
+     * @param groupId
+     * @param childrenCount
+     * @return {@link #STATE_NONE}, {@link #STATE_PARTIAL} 或 {@link #STATE_ALL}
+     */
+    public int getGroupState(long groupId, int childrenCount) {
+        int count = getSelectedCount(groupId, childrenCount);
+        if (count == 0) {
+            return STATE_NONE;
+        }
+        return count >= childrenCount ? STATE_ALL : STATE_PARTIAL;
+    }
+
+    /**
+     * 保存选中状态，只写入每组的位图，不需要遍历子条目
+     * 所有组的位图拼接成一个long[]，外层Bundle中只占用一个key
+     *
+     * @param outState
+     */
+    public void onSaveInstanceState(Bundle outState) {
+        int size = mGroups.size();
+        long[] groupIds = new long[size];
+        boolean[] inverted = new boolean[size];
+        int[] offsets = new int[size + 1];
+        int wordCount = 0;
+        int i = 0;
+        for (Map.Entry<Long, GroupSelection> entry : mGroups.entrySet()) {
+            GroupSelection group = entry.getValue();
+            groupIds[i] = entry.getKey();
+            inverted[i] = group.mInverted;
+            offsets[i] = wordCount;
+            wordCount += group.getUsedWordCount();
+            i++;
+        }
+        offsets[size] = wordCount;
+        long[] words = new long[wordCount];
+        i = 0;
+        for (GroupSelection group : mGroups.values()) {
+            System.arraycopy(group.mWords, 0, words, offsets[i], offsets[i + 1] - offsets[i]);
+            i++;
+        }
+        Bundle state = new Bundle();
+        state.putLongArray(KEY_GROUP_IDS, groupIds);
+        state.putBooleanArray(KEY_INVERTED, inverted);
+        state.putIntArray(KEY_OFFSETS, offsets);
+        state.putLongArray(KEY_WORDS, words);
+        outState.putBundle(KEY_SELECTION, state);
+    }
+
+    public void onRestoreInstanceState(Bundle savedState) {
+        Bundle state = savedState.getBundle(KEY_SELECTION);
+        if (state == null) {
+            return;
+        }
+        long[] groupIds = state.getLongArray(KEY_GROUP_IDS);
+        boolean[] inverted = state.getBooleanArray(KEY_INVERTED);
+        int[] offsets = state.getIntArray(KEY_OFFSETS);
+        long[] words = state.getLongArray(KEY_WORDS);
+        if (groupIds == null || inverted == null || offsets == null || words == null) {
+            return;
+        }
+        mGroups.clear();
+        for (int i = 0; i < groupIds.length; i++) {
+            GroupSelection group = new GroupSelection();
+            group.mInverted = inverted[i];
+            int count = offsets[i + 1] - offsets[i];
+            if (count > 0) {
+                group.mWords = new long[count];
+                System.arraycopy(words, offsets[i], group.mWords, 0, count);
+                for (long word : group.mWords) {
+                    group.mBitCount += Long.bitCount(word);
+                }
+            }
+            mGroups.put(groupIds[i], group);
+        }
+        if (mListener != null) {
+            mListener.onSelectionCleared();
+        }
+    }
+
+    /**
+     * 一组的选中状态
+     * mInverted为true时，位为1表示没有选中，这样全选只需要翻转标记并丢弃位图
+     */
+    private static class GroupSelection {
+        private static final long[] EMPTY = new long[0];
+
+        long[] mWords = EMPTY;
+        //位图中为1的个数
+        int mBitCount;
+        boolean mInverted;
+
+        boolean isSelected(int position) {
+            return getBit(position) != mInverted;
+        }
+
+        /**
+         * @return 状态是否发生了变化
+         */
+        boolean setSelected(int position, boolean selected) {
+            boolean bit = selected != mInverted;
+            if (getBit(position) == bit) {
+                return false;
+            }
+            int index = position >> 6;
+            if (index >= mWords.length) {
+                long[] words = new long[Math.max(index + 1, mWords.length * 2)];
+                System.arraycopy(mWords, 0, words, 0, mWords.length);
+                mWords = words;
+            }
+            if (bit) {
+                mWords[index] |= 1L << position;
+                mBitCount++;
+            } else {
+                mWords[index] &= ~(1L << position);
+                mBitCount--;
+            }
+            return true;
+        }
+
+        void reset(boolean inverted) {
+            mInverted = inverted;
+            mWords = EMPTY;
+            mBitCount = 0;
+        }
+
+        /**
+         * @return 去掉末尾全0的word之后的长度，位图按倍数扩容，保存时不需要写入多余的部分
+         */
+        int getUsedWordCount() {
+            int count = mWords.length;
+            while (count > 0 && mWords[count - 1] == 0) {
+                count--;
+            }
+            return count;
+        }
+
+        int getSelectedCount(int childrenCount) {
+            return mInverted ? childrenCount - mBitCount : mBitCount;
+        }
+
+        private boolean getBit(int position) {
+            int index = position >> 6;
+            return index < mWords.length && (mWords[index] & (1L << position)) != 0;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.gerenvip.expan.list;
+
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class ColumnPackingAdapterTest {
+
+    private static final int CHILDREN_COUNT = 10;
+    private static final int COLUMN_COUNT = 3;
+
+    private ColumnPackingAdapter mAdapter;
+    private FrameLayout mParent;
+
+    @Before
+    public void setUp() {
+        TestAdapter source = new TestAdapter(RuntimeEnvironment.application, 2, CHILDREN_COUNT);
+        mAdapter = new ColumnPackingAdapter(source, COLUMN_COUNT);
+        mParent = new FrameLayout(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void rowsMapToChildren() {
+        //10个子条目每3个一行，最后一行只有1个
+        assertEquals(4, mAdapter.getChildrenCount(0));
+        assertEquals(0, mAdapter.getChildPosition(0, 0));
+        assertEquals(5, mAdapter.getChildPosition(1, 2));
+        assertEquals(9, mAdapter.getChildPosition(3, 0));
+        //行的数据和id使用该行第一个子条目
+        assertEquals("child 1-6", mAdapter.getChild(1, 2));
+        assertEquals(6, mAdapter.getChildId(1, 2));
+
+        mAdapter.setColumnCount(4);
+        assertEquals(3, mAdapter.getChildrenCount(0));
+        assertEquals(9, mAdapter.getChildPosition(2, 1));
+    }
+
+    @Test
+    public void rowBindsCellsOfItsChildren() {
+        LinearLayout row = (LinearLayout) mAdapter.getChildView(0, 1, false, null, mParent);
+
+        assertEquals(COLUMN_COUNT, row.getChildCount());
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            assertEquals("child 0-" + (3 + column), ((TextView) row.getChildAt(column)).getText().toString());
+            assertEquals(View.VISIBLE, row.getChildAt(column).getVisibility());
+        }
+    }
+
+    @Test
+    public void lastRowPaddedWithPlaceholders() {
+        LinearLayout row = (LinearLayout) mAdapter.getChildView(0, 3, true, null, mParent);
+
+        assertEquals(COLUMN_COUNT, row.getChildCount());
+        assertEquals("child 0-9", ((TextView) row.getChildAt(0)).getText().toString());
+        assertFalse(ColumnPackingAdapter.isPlaceholder(row.getChildAt(0)));
+        for (int column = 1; column < COLUMN_COUNT; column++) {
+            assertTrue(ColumnPackingAdapter.isPlaceholder(row.getChildAt(column)));
+            assertEquals(View.INVISIBLE, row.getChildAt(column).getVisibility());
+        }
+    }
+
+    @Test
+    public void placeholdersReplacedWhenRowReused() {
+        LinearLayout lastRow = (LinearLayout) mAdapter.getChildView(0, 3, true, null, mParent);
+        View firstCell = lastRow.getChildAt(0);
+
+        //最后一行被复用为一整行时，占位的格子换成原adapter的view，原来的格子继续复用
+        LinearLayout row = (LinearLayout) mAdapter.getChildView(0, 0, false, lastRow, mParent);
+        assertSame(lastRow, row);
+        assertSame(firstCell, row.getChildAt(0));
+        assertEquals(COLUMN_COUNT, row.getChildCount());
+        for (int column = 0; column < COLUMN_COUNT; column++) {
+            assertFalse(ColumnPackingAdapter.isPlaceholder(row.getChildAt(column)));
+            assertEquals("child 0-" + column, ((TextView) row.getChildAt(column)).getText().toString());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.gerenvip.expan.list;
+
+import android.content.Context;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * 记录自身被测量次数的header
+ */
+class CountingHeader extends FrameLayout {
+
+    static final int HEIGHT = 50;
+
+    int measureCount;
+    final TextView textView;
+
+    CountingHeader(Context context) {
+        super(context);
+        setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, HEIGHT));
+        textView = new TextView(context);
+        addView(textView, new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        measureCount++;
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+}
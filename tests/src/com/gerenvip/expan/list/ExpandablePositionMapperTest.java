@@ -0,0 +1,73 @@
+package com.gerenvip.expan.list;
+
+import android.widget.ExpandableListView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class ExpandablePositionMapperTest {
+
+    private static final int GROUP_COUNT = 4;
+    private static final int CHILDREN_COUNT = 3;
+
+    private TestAdapter mAdapter;
+    private ExpandablePositionMapper mMapper;
+
+    @Before
+    public void setUp() {
+        mAdapter = new TestAdapter(RuntimeEnvironment.application, GROUP_COUNT, CHILDREN_COUNT);
+        mMapper = new ExpandablePositionMapper();
+        mMapper.setAdapter(mAdapter);
+    }
+
+    @Test
+    public void collapsedGroupsAreOneRowEach() {
+        assertEquals(GROUP_COUNT, mMapper.getFlatCount());
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            assertEquals(ExpandableListView.getPackedPositionForGroup(i), mMapper.getPackedPosition(i));
+        }
+        assertEquals(ExpandableListView.PACKED_POSITION_VALUE_NULL, mMapper.getPackedPosition(GROUP_COUNT));
+    }
+
+    @Test
+    public void expandedGroupMapsChildren() {
+        assertTrue(mMapper.setExpanded(1, true));
+        assertFalse(mMapper.setExpanded(1, true));
+        assertEquals(GROUP_COUNT + CHILDREN_COUNT, mMapper.getFlatCount());
+
+        //0:g0 1:g1 2-4:g1的子条目 5:g2
+        assertEquals(ExpandableListView.getPackedPositionForGroup(1), mMapper.getPackedPosition(1));
+        assertEquals(ExpandableListView.getPackedPositionForChild(1, 2), mMapper.getPackedPosition(4));
+        assertEquals(ExpandableListView.getPackedPositionForGroup(2), mMapper.getPackedPosition(5));
+        assertEquals(5, mMapper.getGroupFlatPosition(2));
+
+        for (int i = 0; i < mMapper.getFlatCount(); i++) {
+            assertEquals(i, mMapper.getFlatPosition(mMapper.getPackedPosition(i)));
+        }
+        //收起的组中的子条目没有扁平位置
+        assertEquals(-1, mMapper.getFlatPosition(ExpandableListView.getPackedPositionForChild(2, 0)));
+    }
+
+    @Test
+    public void expansionFollowsStableIdsAfterDataChange() {
+        mMapper.setExpanded(2, true);
+        //第0组被删除，原来的第2组(id=2)移到了位置1
+        mAdapter.setGroupIdOffset(1);
+        mAdapter.setGroupCount(GROUP_COUNT - 1);
+        mMapper.onDataChanged();
+
+        assertTrue(mMapper.isExpanded(1));
+        assertFalse(mMapper.isExpanded(2));
+        assertEquals(GROUP_COUNT - 1 + CHILDREN_COUNT, mMapper.getFlatCount());
+    }
+}
@@ -0,0 +1,89 @@
+package com.gerenvip.expan.list;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class GroupStreamLoaderTest {
+
+    @Test
+    public void largeGroupIsPublishedBeforeItEnds() throws Exception {
+        StringBuilder data = new StringBuilder("#A\n");
+        for (int i = 0; i < 25; i++) {
+            data.append("a").append(i).append(",20,addr\n");
+        }
+        data.append("#B,avatar\n");
+        for (int i = 0; i < 3; i++) {
+            data.append("b").append(i).append(",30,addr\n");
+        }
+        RecordingCallback callback = new RecordingCallback();
+        GroupStreamLoader loader = new GroupStreamLoader(
+                new ByteArrayInputStream(data.toString().getBytes("UTF-8")), 10, callback);
+        loader.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!callback.finished && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            Robolectric.flushForegroundThreadScheduler();
+        }
+        assertTrue(callback.finished);
+
+        //每10行发布一次：A的前9个子条目先显示，之后的子条目分两次追加，最后一批带上完整的B
+        List<String> expected = new ArrayList<String>();
+        expected.add("batch A:9");
+        expected.add("children 10");
+        expected.add("children 6");
+        expected.add("batch B:3");
+        assertEquals(expected, callback.events);
+        assertEquals(2, callback.groups.size());
+        assertEquals(25, callback.children.get(0).size());
+        assertEquals("a24", callback.children.get(0).get(24).getName());
+        assertEquals(3, callback.children.get(1).size());
+        assertEquals("avatar", callback.groups.get(1).getAvatar());
+    }
+
+    private static class RecordingCallback implements GroupStreamLoader.Callback {
+        final List<String> events = new ArrayList<String>();
+        final List<Group> groups = new ArrayList<Group>();
+        final List<List<People>> children = new ArrayList<List<People>>();
+        boolean finished;
+
+        @Override
+        public void onBatchLoaded(List<Group> groups, List<List<People>> children) {
+            StringBuilder event = new StringBuilder("batch");
+            for (int i = 0; i < groups.size(); i++) {
+                event.append(' ').append(groups.get(i).getTitle()).append(':').append(children.get(i).size());
+            }
+            events.add(event.toString());
+            this.groups.addAll(groups);
+            this.children.addAll(children);
+        }
+
+        @Override
+        public void onChildrenLoaded(List<People> children) {
+            events.add("children " + children.size());
+            this.children.get(this.children.size() - 1).addAll(children);
+        }
+
+        @Override
+        public void onLoadFinished() {
+            finished = true;
+        }
+
+        @Override
+        public void onLoadFailed(IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
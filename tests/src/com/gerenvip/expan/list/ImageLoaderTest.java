@@ -0,0 +1,100 @@
+package com.gerenvip.expan.list;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class ImageLoaderTest {
+
+    @Test
+    public void nullKeyShowsPlaceholder() {
+        final int[] decodeCount = new int[1];
+        ImageLoader loader = new ImageLoader(1024 * 1024, new ImageLoader.Decoder() {
+            @Override
+            public Bitmap decode(String key) {
+                decodeCount[0]++;
+                return Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
+            }
+        });
+        ImageView imageView = new ImageView(RuntimeEnvironment.application);
+
+        loader.load(null, imageView, android.R.color.transparent);
+        assertNull(loader.getCached(null));
+        //android.R.color.transparent是颜色资源，显示为ColorDrawable
+        assertTrue(imageView.getDrawable() instanceof ColorDrawable);
+        assertEquals(0, decodeCount[0]);
+    }
+
+    @Test
+    public void failedKeyIsNotDecodedAgain() throws Exception {
+        final int[] decodeCount = new int[1];
+        ImageLoader loader = new ImageLoader(1024 * 1024, new ImageLoader.Decoder() {
+            @Override
+            public Bitmap decode(String key) {
+                decodeCount[0]++;
+                return null;
+            }
+        });
+        ImageView imageView = new ImageView(RuntimeEnvironment.application);
+
+        loader.load("bad", imageView, android.R.color.transparent);
+        awaitRequests(loader);
+        assertEquals(1, decodeCount[0]);
+        Drawable placeholder = imageView.getDrawable();
+        assertTrue(placeholder instanceof ColorDrawable);
+
+        //模拟updatePinnedHeader每一帧都重新绑定同一个key
+        for (int i = 0; i < 3; i++) {
+            loader.load("bad", imageView, android.R.color.transparent);
+            awaitRequests(loader);
+        }
+        assertEquals(1, decodeCount[0]);
+        //placeholder没有被重新设置
+        assertSame(placeholder, imageView.getDrawable());
+
+        //另一个View绑定同一个key，也直接显示placeholder
+        ImageView other = new ImageView(RuntimeEnvironment.application);
+        loader.load("bad", other, android.R.color.transparent);
+        awaitRequests(loader);
+        assertEquals(1, decodeCount[0]);
+        assertTrue(other.getDrawable() instanceof ColorDrawable);
+
+        //clearCache之后会重新尝试
+        loader.clearCache();
+        loader.load("bad", other, android.R.color.transparent);
+        awaitRequests(loader);
+        assertEquals(2, decodeCount[0]);
+        loader.shutdown();
+    }
+
+    /**
+     * 等待后台解码完成，并执行post到主线程的deliver
+     */
+    private static void awaitRequests(ImageLoader loader) throws InterruptedException {
+        Map<?, ?> requests = ReflectionHelpers.getField(loader, "mRequests");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!requests.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+        assertTrue(requests.isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package com.gerenvip.expan.list;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.CheckBox;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用示例中真正的header验证：滑动时updatePinnedHeader不会让header重新测量
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class MyActivityTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    //res/raw/people.txt中的分组个数
+    private static final int GROUP_COUNT = 3;
+
+    private MyActivity mActivity;
+    private PinnedHeaderExpandableListView mListView;
+    private CountingFrame mHeader;
+    private View mContent;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        mActivity = Robolectric.setupActivity(MyActivity.class);
+        mListView = (PinnedHeaderExpandableListView) mActivity.findViewById(R.id.expandable_ist);
+        //Robolectric的ShadowAbsListView拦截了setOnScrollListener，布局时不会回调onScroll，这里直接设置真正的字段
+        ReflectionHelpers.setField(AbsListView.class, mListView, "mOnScrollListener", mListView);
+        //等待后台线程解析完所有分组
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mListView.getExpandableListAdapter().getGroupCount() < GROUP_COUNT
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            Robolectric.flushForegroundThreadScheduler();
+        }
+        assertEquals(GROUP_COUNT, mListView.getExpandableListAdapter().getGroupCount());
+        //从窗口中移除，只由测试控制列表的measure和layout
+        ((ViewGroup) mListView.getParent()).removeView(mListView);
+
+        //把示例的header包一层，记录它被测量的次数
+        mContent = mActivity.getPinnedHeader();
+        mHeader = new CountingFrame(mContent);
+        mListView.setOnHeaderUpdateListener(new PinnedHeaderExpandableListView.OnHeaderUpdateListener() {
+            @Override
+            public View getPinnedHeader() {
+                return mHeader;
+            }
+
+            @Override
+            public void updatePinnedHeader(View headerView, int firstVisibileGroupPos) {
+                mActivity.updatePinnedHeader(mContent, firstVisibileGroupPos);
+            }
+        });
+        layout();
+    }
+
+    @Test
+    public void scrollingWithinGroupDoesNotMeasureHeader() {
+        int count = mHeader.measureCount;
+        //第0组有13个子条目，逐帧滑动但第一个可见条目始终在第0组
+        for (int i = 0; i < 40; i++) {
+            mListView.setSelectionFromTop(i / 4, -(i % 4) * 10);
+            layout();
+            assertFalse(mContent.isLayoutRequested());
+        }
+        assertEquals(count, mHeader.measureCount);
+    }
+
+    @Test
+    public void selectionCountChangeMeasuresHeaderOnce() {
+        int count = mHeader.measureCount;
+        CheckBox checkBox = (CheckBox) mContent.findViewById(R.id.check);
+        //选中第0组的一个子条目，header上的checkbox显示1/13，文字变化可能改变宽度
+        mActivity.onChildClick(mListView, null, 0, 0, 0);
+        assertEquals("1/13", checkBox.getText().toString());
+        //header没有parent，不依赖列表重新布局：还没有measure/layout列表时header已经重新测量和布局
+        assertEquals(count + 1, mHeader.measureCount);
+        assertFalse(mContent.isLayoutRequested());
+        //checkbox按新的文字重新测量并布局，不会保留旧的宽度而截断文字
+        assertFalse(checkBox.isLayoutRequested());
+        assertEquals(checkBox.getMeasuredWidth(), checkBox.getWidth());
+        assertEquals(mHeader.getMeasuredHeight(), mHeader.getHeight());
+
+        //选中数量不变时，后续的帧都不再测量
+        for (int i = 0; i < 10; i++) {
+            layout();
+        }
+        assertEquals(count + 1, mHeader.measureCount);
+
+        //再选中一个，文字变为2/13，同样立即重新测量
+        mActivity.onChildClick(mListView, null, 0, 1, 1);
+        assertEquals("2/13", checkBox.getText().toString());
+        assertEquals(count + 2, mHeader.measureCount);
+        assertFalse(mContent.isLayoutRequested());
+    }
+
+    private void layout() {
+        mListView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mListView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static class CountingFrame extends FrameLayout {
+        int measureCount;
+
+        CountingFrame(View content) {
+            super(content.getContext());
+            setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+            addView(content, new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            measureCount++;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+}
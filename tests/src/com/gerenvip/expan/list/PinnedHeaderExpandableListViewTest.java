@@ -0,0 +1,461 @@
+package com.gerenvip.expan.list;
+
+import android.os.SystemClock;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.ExpandableListView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class PinnedHeaderExpandableListViewTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 800;
+    private static final int GROUP_COUNT = 5;
+    private static final int CHILDREN_COUNT = 10;
+
+    private PinnedHeaderExpandableListView mListView;
+    private TestAdapter mAdapter;
+    private CountingHeader mHeader;
+    private HeaderListener mHeaderListener;
+
+    @Before
+    public void setUp() {
+        mListView = new PinnedHeaderExpandableListView(RuntimeEnvironment.application);
+        //Robolectric的ShadowAbsListView拦截了setOnScrollListener，布局时不会回调onScroll，这里直接设置真正的字段
+        ReflectionHelpers.setField(AbsListView.class, mListView, "mOnScrollListener", mListView);
+        //没有分割线，条目的位置只由条目高度决定
+        mListView.setDivider(null);
+        mAdapter = new TestAdapter(RuntimeEnvironment.application, GROUP_COUNT, CHILDREN_COUNT);
+        mListView.setAdapter(mAdapter);
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            mListView.expandGroup(i);
+        }
+        mHeader = new CountingHeader(RuntimeEnvironment.application);
+        mHeaderListener = new HeaderListener(mHeader);
+        mListView.setOnHeaderUpdateListener(mHeaderListener);
+    }
+
+    @Test
+    public void headerPinnedAtTop() {
+        layout(WIDTH, HEIGHT);
+
+        assertEquals(0, mHeader.getTop());
+        assertEquals(CountingHeader.HEIGHT, mHeader.getBottom());
+        assertEquals(WIDTH, mHeader.getWidth());
+        assertEquals(0, mHeaderListener.groupPos);
+    }
+
+    @Test
+    public void headerPushedUpByNextGroup() {
+        layout(WIDTH, HEIGHT);
+        //第0组最后一个子条目在顶部，下一组的group条目距离顶部30，比header矮20
+        int lastChild = mAdapter.getFlatGroupPosition(1) - 1;
+        mListView.setSelectionFromTop(lastChild, 30 - TestAdapter.CHILD_HEIGHT);
+        layout(WIDTH, HEIGHT);
+
+        assertEquals(30, mListView.getChildAt(1).getTop());
+        assertEquals(-20, mHeader.getTop());
+        assertEquals(CountingHeader.HEIGHT - 20, mHeader.getBottom());
+        assertEquals(0, mHeaderListener.groupPos);
+    }
+
+    @Test
+    public void headerNotPushedWhileNextGroupBelowIt() {
+        layout(WIDTH, HEIGHT);
+        int lastChild = mAdapter.getFlatGroupPosition(1) - 1;
+        mListView.setSelectionFromTop(lastChild, CountingHeader.HEIGHT + 5 - TestAdapter.CHILD_HEIGHT);
+        layout(WIDTH, HEIGHT);
+
+        assertTrue(mListView.getChildAt(1).getTop() > CountingHeader.HEIGHT);
+        assertEquals(0, mHeader.getTop());
+    }
+
+    @Test
+    public void headerSwitchesToNextGroup() {
+        layout(WIDTH, HEIGHT);
+        mListView.setSelectionFromTop(mAdapter.getFlatGroupPosition(2), 0);
+        layout(WIDTH, HEIGHT);
+
+        assertEquals(0, mHeader.getTop());
+        assertEquals(2, mHeaderListener.groupPos);
+    }
+
+    @Test
+    public void secondChildNotLaidOut() {
+        //只测量不布局，列表还没有子view，这时onScroll报告的第二个条目已经属于下一组
+        mListView.measure(exactly(WIDTH), exactly(HEIGHT));
+        assertEquals(0, mListView.getChildCount());
+        int lastChild = mAdapter.getFlatGroupPosition(1) - 1;
+        mListView.onScroll(mListView, lastChild, 2, mListView.getCount());
+
+        assertEquals(0, mHeader.getTop());
+        assertEquals(CountingHeader.HEIGHT, mHeader.getBottom());
+        assertEquals(0, mHeaderListener.groupPos);
+    }
+
+    @Test
+    public void tapOnHeaderTogglesGroup() {
+        layout(WIDTH, HEIGHT);
+        mListView.setSelectionFromTop(3, 0);
+        layout(WIDTH, HEIGHT);
+        assertTrue(mListView.isGroupExpanded(0));
+
+        tap(10, CountingHeader.HEIGHT / 2);
+        assertFalse(mListView.isGroupExpanded(0));
+    }
+
+    @Test
+    public void expandGroupsLaysOutOnce() {
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            mListView.collapseGroup(i);
+        }
+        layout(WIDTH, HEIGHT);
+        int before = mHeaderListener.updateCount;
+
+        mListView.expandGroups(1, GROUP_COUNT);
+        //展开只请求布局，下一帧的一次layout中才刷新header
+        assertEquals(before, mHeaderListener.updateCount);
+        layout(WIDTH, HEIGHT);
+
+        assertEquals(1, mHeaderListener.updateCount - before);
+        assertFalse(mListView.isGroupExpanded(0));
+        for (int i = 1; i < GROUP_COUNT; i++) {
+            assertTrue(mListView.isGroupExpanded(i));
+        }
+        assertEquals(GROUP_COUNT + (GROUP_COUNT - 1) * CHILDREN_COUNT, mListView.getCount());
+    }
+
+    @Test
+    public void updatePinnedHeaderOncePerFrame() {
+        layout(WIDTH, HEIGHT);
+        for (int i = 1; i <= 5; i++) {
+            int before = mHeaderListener.updateCount;
+            mListView.setSelectionFromTop(i * 3, -i);
+            layout(WIDTH, HEIGHT);
+            assertEquals(1, mHeaderListener.updateCount - before);
+        }
+    }
+
+    @Test
+    public void scrollFrameCostWithinBudget() {
+        layout(WIDTH, HEIGHT);
+        //每一帧滑动10px，跨过多个分组：每一帧只绑定新出现的条目，不重新布局列表，不测量header，header最多更新一次
+        for (int frame = 0; frame < 100; frame++) {
+            int bindCount = mAdapter.bindCount;
+            int updateCount = mHeaderListener.updateCount;
+            int measureCount = mHeader.measureCount;
+            int lastVisible = mListView.getLastVisiblePosition();
+
+            mListView.scrollListBy(10);
+
+            assertEquals(mListView.getLastVisiblePosition() - lastVisible, mAdapter.bindCount - bindCount);
+            assertFalse(mListView.isLayoutRequested());
+            assertEquals(measureCount, mHeader.measureCount);
+            assertTrue(mHeaderListener.updateCount - updateCount <= 1);
+        }
+        //确实滑过了分组的边界
+        assertTrue(mHeaderListener.groupPos > 0);
+    }
+
+    @Test
+    public void headerMeasuredOnlyWhenWidthChanges() {
+        layout(WIDTH, HEIGHT);
+        int count = mHeader.measureCount;
+        assertTrue(count > 0);
+
+        //StickyLayout拖动时列表每一帧的高度都在变化
+        for (int height = HEIGHT; height > HEIGHT - 100; height -= 10) {
+            layout(WIDTH, height);
+        }
+        //滑动也不会重新测量header
+        mListView.setSelectionFromTop(mAdapter.getFlatGroupPosition(1) - 1, -30);
+        layout(WIDTH, HEIGHT);
+        assertEquals(count, mHeader.measureCount);
+
+        layout(WIDTH - 10, HEIGHT);
+        assertEquals(count + 1, mHeader.measureCount);
+        assertEquals(WIDTH - 10, mHeader.getWidth());
+    }
+
+    @Test
+    public void headerRemeasuredWhenNotified() {
+        layout(WIDTH, HEIGHT);
+        int count = mHeader.measureCount;
+
+        //内容变化可能改变header的大小
+        mHeader.textView.setText("a longer title");
+        mListView.notifyPinnedHeaderChanged();
+        assertEquals(count + 1, mHeader.measureCount);
+
+        //header自己请求布局时，列表下一次measure(例如StickyLayout拖动的下一帧)会重新测量它
+        mHeader.requestLayout();
+        mListView.requestLayout();
+        layout(WIDTH, HEIGHT);
+        assertEquals(count + 2, mHeader.measureCount);
+    }
+
+    @Test
+    public void footerReservesBottomInset() {
+        CountingHeader footer = new CountingHeader(RuntimeEnvironment.application);
+        mListView.setPinMode(PinnedHeaderExpandableListView.PIN_MODE_BOTH);
+        mListView.setOnFooterUpdateListener(new FooterListener(footer));
+        layout(WIDTH, HEIGHT);
+
+        assertEquals(CountingHeader.HEIGHT, mListView.getPaddingBottom());
+        assertEquals(View.VISIBLE, footer.getVisibility());
+        assertEquals(HEIGHT - CountingHeader.HEIGHT, footer.getTop());
+
+        mListView.setOnFooterUpdateListener(null);
+        layout(WIDTH, HEIGHT);
+        assertEquals(0, mListView.getPaddingBottom());
+    }
+
+    @Test
+    public void footerInsetAppliedOutsideMeasure() {
+        CountingHeader footer = new CountingHeader(RuntimeEnvironment.application);
+        mListView.setPinMode(PinnedHeaderExpandableListView.PIN_MODE_BOTH);
+        layout(WIDTH, HEIGHT);
+        //调用者自己关闭了裁剪
+        mListView.setClipToPadding(false);
+
+        mListView.setOnFooterUpdateListener(new FooterListener(footer));
+        //设置footer时就加上了bottom padding，不需要等到measure
+        assertEquals(CountingHeader.HEIGHT, mListView.getPaddingBottom());
+        assertFalse(isClipToPadding());
+        layout(WIDTH, HEIGHT);
+        //measure和layout过程中没有再次请求布局
+        assertFalse(mListView.isLayoutRequested());
+
+        mListView.setOnFooterUpdateListener(null);
+        assertEquals(0, mListView.getPaddingBottom());
+        //恢复的是调用者的设置，而不是默认的true
+        assertFalse(isClipToPadding());
+
+        mListView.setClipToPadding(true);
+        mListView.setOnFooterUpdateListener(new FooterListener(footer));
+        assertFalse(isClipToPadding());
+        mListView.setPinMode(PinnedHeaderExpandableListView.PIN_MODE_HEADER);
+        assertEquals(0, mListView.getPaddingBottom());
+        assertTrue(isClipToPadding());
+    }
+
+    @Test
+    public void footerPushedUpByPreviousGroupRow() {
+        CountingHeader footer = new CountingHeader(RuntimeEnvironment.application);
+        FooterListener listener = new FooterListener(footer);
+        mListView.setPinMode(PinnedHeaderExpandableListView.PIN_MODE_BOTH);
+        mListView.setOnFooterUpdateListener(listener);
+        layout(WIDTH, HEIGHT);
+        int pinnedTop = HEIGHT - CountingHeader.HEIGHT;
+
+        //第2组的group条目是footer上方最后一个条目，底部超出了footer的位置20；
+        //列表不裁剪padding，它下面的子条目也会布局在footer后面，但不影响footer
+        int group2 = mAdapter.getFlatGroupPosition(2);
+        mListView.setSelectionFromTop(group2, pinnedTop + 20 - TestAdapter.GROUP_HEIGHT);
+        layout(WIDTH, HEIGHT);
+        assertEquals(pinnedTop + 20 - TestAdapter.GROUP_HEIGHT, mListView.getChildAt(group2 - mListView.getFirstVisiblePosition()).getTop());
+        assertTrue(mListView.getLastVisiblePosition() > group2);
+        assertEquals(pinnedTop + 20, footer.getTop());
+        assertEquals(3, listener.groupPos);
+
+        //group条目完全出现后，footer回到固定的位置
+        mListView.setSelectionFromTop(group2, pinnedTop - 10 - TestAdapter.GROUP_HEIGHT);
+        layout(WIDTH, HEIGHT);
+        assertEquals(pinnedTop, footer.getTop());
+        assertEquals(3, listener.groupPos);
+
+        //最后一组出现后，后面没有组，footer隐藏
+        mListView.setSelectionFromTop(mAdapter.getFlatGroupPosition(GROUP_COUNT - 1), 0);
+        layout(WIDTH, HEIGHT);
+        assertEquals(View.INVISIBLE, footer.getVisibility());
+    }
+
+    @Test
+    public void footerShowsNextGroupFromFirstUpdate() {
+        CountingHeader footer = new CountingHeader(RuntimeEnvironment.application);
+        FooterListener listener = new FooterListener(footer);
+        mListView.setPinMode(PinnedHeaderExpandableListView.PIN_MODE_BOTH);
+        //与onCreate中的顺序相同，列表还没有布局时就设置listener，不能收到无效的组
+        mListView.setOnFooterUpdateListener(listener);
+        assertEquals(-1, listener.groupPos);
+
+        layout(WIDTH, HEIGHT);
+        //最后一个可见条目是第1组的子条目，footer显示第2组
+        assertEquals(1, ExpandableListView.getPackedPositionGroup(
+                mListView.getExpandableListPosition(mListView.getLastVisiblePosition())));
+        assertEquals(2, listener.groupPos);
+
+        //重新设置listener时，第一次回调也是下一组
+        FooterListener other = new FooterListener(footer);
+        mListView.setOnFooterUpdateListener(other);
+        assertEquals(2, other.groupPos);
+    }
+
+    @Test
+    public void childClickResolvedByTouchedColumn() {
+        ChildClickRecorder recorder = new ChildClickRecorder();
+        mListView.setOnChildClickListener(recorder);
+        mListView.setChildColumnCount(3);
+        layout(WIDTH, HEIGHT);
+
+        //第0组的第1行包含子条目3、4、5，点击第3列
+        View row = mListView.getChildAt(2);
+        tapItem(2, WIDTH * 5 / 6);
+
+        assertEquals(0, recorder.groupPosition);
+        assertEquals(5, recorder.childPosition);
+        assertEquals(5, recorder.id);
+        assertSame(((ViewGroup) row).getChildAt(2), recorder.view);
+    }
+
+    @Test
+    public void placeholderCellIsNotClickable() {
+        ChildClickRecorder recorder = new ChildClickRecorder();
+        mListView.setOnChildClickListener(recorder);
+        mListView.setChildColumnCount(3);
+        layout(WIDTH, HEIGHT);
+
+        //第0组的最后一行只有子条目9，第3列是占位的格子
+        tapItem(4, WIDTH * 5 / 6);
+
+        assertEquals(0, recorder.clickCount);
+    }
+
+    @Test
+    public void nonTouchClickUsesSelectedColumn() {
+        ChildClickRecorder recorder = new ChildClickRecorder();
+        mListView.setOnChildClickListener(recorder);
+        mListView.setChildColumnCount(3);
+        layout(WIDTH, HEIGHT);
+        ViewGroup row = (ViewGroup) mListView.getChildAt(2);
+        //先触摸点击第3列，留下过时的触摸坐标
+        tapItem(2, WIDTH * 5 / 6);
+        assertEquals(5, recorder.childPosition);
+
+        //无障碍服务的点击(ACTION_CLICK)直接调用performItemClick，没有触摸坐标，没有选中的格子时使用第一格
+        mListView.performItemClick(row, 2, mListView.getItemIdAtPosition(2));
+        assertEquals(2, recorder.clickCount);
+        assertEquals(3, recorder.childPosition);
+
+        //按键之后的点击使用被选中的格子
+        row.getChildAt(1).setSelected(true);
+        mListView.dispatchKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_DPAD_CENTER));
+        mListView.performItemClick(row, 2, mListView.getItemIdAtPosition(2));
+        assertEquals(3, recorder.clickCount);
+        assertEquals(4, recorder.childPosition);
+        assertSame(row.getChildAt(1), recorder.view);
+    }
+
+    private void layout(int width, int height) {
+        mListView.measure(exactly(width), exactly(height));
+        mListView.layout(0, 0, width, height);
+    }
+
+    private boolean isClipToPadding() {
+        //getClipToPadding从API 21开始才有
+        int flags = ReflectionHelpers.getField(mListView, "mGroupFlags");
+        return (flags & 0x2) != 0;
+    }
+
+    private static int exactly(int size) {
+        return View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+    }
+
+    private void tap(int x, int y) {
+        long time = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(time, time, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(time, time + 50, MotionEvent.ACTION_UP, x, y, 0);
+        mListView.dispatchTouchEvent(down);
+        mListView.dispatchTouchEvent(up);
+        down.recycle();
+        up.recycle();
+    }
+
+    /**
+     * 轻触列表中的条目。列表没有attach到窗口，AbsListView在抬手时post的点击不会执行，这里在抬手之后直接点击
+     */
+    private void tapItem(int position, int x) {
+        View item = mListView.getChildAt(position - mListView.getFirstVisiblePosition());
+        tap(x, item.getTop() + item.getHeight() / 2);
+        mListView.performItemClick(item, position, mListView.getItemIdAtPosition(position));
+    }
+
+    private static class ChildClickRecorder implements ExpandableListView.OnChildClickListener {
+        int clickCount;
+        int groupPosition = -1;
+        int childPosition = -1;
+        long id = -1;
+        View view;
+
+        @Override
+        public boolean onChildClick(ExpandableListView parent, View v, int groupPosition, int childPosition, long id) {
+            clickCount++;
+            this.groupPosition = groupPosition;
+            this.childPosition = childPosition;
+            this.id = id;
+            view = v;
+            return true;
+        }
+    }
+
+    private static class HeaderListener implements PinnedHeaderExpandableListView.OnHeaderUpdateListener {
+        private final View mHeader;
+        int groupPos = -1;
+        int updateCount;
+
+        HeaderListener(View header) {
+            mHeader = header;
+        }
+
+        @Override
+        public View getPinnedHeader() {
+            return mHeader;
+        }
+
+        @Override
+        public void updatePinnedHeader(View headerView, int firstVisibileGroupPos) {
+            groupPos = firstVisibileGroupPos;
+            updateCount++;
+        }
+    }
+
+    private class FooterListener implements PinnedHeaderExpandableListView.OnFooterUpdateListener {
+        private final View mFooter;
+        int groupPos = -1;
+
+        FooterListener(View footer) {
+            mFooter = footer;
+        }
+
+        @Override
+        public View getPinnedFooter() {
+            return mFooter;
+        }
+
+        @Override
+        public void updatePinnedFooter(View footerView, int groupPos) {
+            //和示例中一样按组的位置读取数据，无效的位置会抛出异常
+            if (groupPos < 0 || groupPos >= mAdapter.getGroupCount()) {
+                throw new IndexOutOfBoundsException("groupPos=" + groupPos);
+            }
+            this.groupPos = groupPos;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.gerenvip.expan.list;
+
+import android.os.Bundle;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class SelectionModelTest {
+
+    @Test
+    public void stateSavedUnderSingleKey() {
+        SelectionModel model = new SelectionModel();
+        for (long groupId = 0; groupId < 50; groupId++) {
+            model.setSelected(groupId, 1, true);
+        }
+        Bundle outState = new Bundle();
+        model.onSaveInstanceState(outState);
+
+        //分组再多也只占用外层Bundle的一个key
+        assertEquals(1, outState.size());
+    }
+
+    @Test
+    public void restoreRoundTrip() {
+        SelectionModel model = new SelectionModel();
+        model.setSelected(1, 0, true);
+        model.setSelected(1, 130, true);
+        model.selectAll(2);
+        model.setSelected(2, 3, false);
+        //选中后又取消，位图扩容后末尾全是0
+        model.setSelected(3, 200, true);
+        model.setSelected(3, 200, false);
+
+        Bundle outState = new Bundle();
+        model.onSaveInstanceState(outState);
+        SelectionModel restored = new SelectionModel();
+        restored.onRestoreInstanceState(outState);
+
+        assertTrue(restored.isSelected(1, 0));
+        assertTrue(restored.isSelected(1, 130));
+        assertFalse(restored.isSelected(1, 1));
+        assertEquals(2, restored.getSelectedCount(1, 200));
+
+        assertEquals(SelectionModel.STATE_PARTIAL, restored.getGroupState(2, 10));
+        assertFalse(restored.isSelected(2, 3));
+        assertEquals(9, restored.getSelectedCount(2, 10));
+
+        assertEquals(0, restored.getSelectedCount(3, 300));
+        assertFalse(restored.isSelected(3, 200));
+    }
+}
@@ -0,0 +1,146 @@
+package com.gerenvip.expan.list;
+
+import android.os.SystemClock;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 19, manifest = "../AndroidManifest.xml")
+public class StickyLayoutTest {
+
+    private static final int START_Y = 400;
+
+    private StickyLayout mStickyLayout;
+    private int mTouchSlop;
+    private boolean mGiveUp;
+
+    @Before
+    public void setUp() {
+        View root = LayoutInflater.from(RuntimeEnvironment.application).inflate(R.layout.main, null);
+        root.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, 480, 800);
+        mStickyLayout = (StickyLayout) root.findViewById(R.id.sticky_layout);
+        //获取到焦点时才读取header的高度和touchSlop
+        mStickyLayout.onWindowFocusChanged(true);
+        mStickyLayout.setOnGiveUpTouchEventListener(new StickyLayout.OnGiveUpTouchEventListener() {
+            @Override
+            public boolean giveUpTouchEvent(MotionEvent event) {
+                return mGiveUp;
+            }
+        });
+        mTouchSlop = ViewConfiguration.get(RuntimeEnvironment.application).getScaledTouchSlop();
+    }
+
+    @Test
+    public void downIsNeverIntercepted() {
+        assertFalse(intercept(MotionEvent.ACTION_DOWN, START_Y));
+    }
+
+    @Test
+    public void expandedInterceptsUpwardDragPastSlop() {
+        intercept(MotionEvent.ACTION_DOWN, START_Y);
+        assertFalse(intercept(MotionEvent.ACTION_MOVE, START_Y - mTouchSlop + 1));
+        assertTrue(intercept(MotionEvent.ACTION_MOVE, START_Y - mTouchSlop));
+    }
+
+    @Test
+    public void expandedIgnoresDownwardDragWhenListNotAtTop() {
+        mGiveUp = false;
+        intercept(MotionEvent.ACTION_DOWN, START_Y);
+        assertFalse(intercept(MotionEvent.ACTION_MOVE, START_Y + mTouchSlop * 2));
+    }
+
+    @Test
+    public void collapsedInterceptsDownwardDragOnlyWhenListGivesUp() {
+        collapse();
+
+        mGiveUp = false;
+        intercept(MotionEvent.ACTION_DOWN, START_Y);
+        //收缩状态下向上滑动交给列表
+        assertFalse(intercept(MotionEvent.ACTION_MOVE, START_Y - mTouchSlop * 2));
+        assertFalse(intercept(MotionEvent.ACTION_MOVE, START_Y + mTouchSlop * 2));
+
+        mGiveUp = true;
+        intercept(MotionEvent.ACTION_DOWN, START_Y);
+        assertFalse(intercept(MotionEvent.ACTION_MOVE, START_Y + mTouchSlop - 1));
+        assertTrue(intercept(MotionEvent.ACTION_MOVE, START_Y + mTouchSlop));
+    }
+
+    @Test
+    public void upReleasesInterception() {
+        intercept(MotionEvent.ACTION_DOWN, START_Y);
+        assertTrue(intercept(MotionEvent.ACTION_MOVE, START_Y - mTouchSlop * 2));
+        assertFalse(intercept(MotionEvent.ACTION_UP, START_Y - mTouchSlop * 2));
+    }
+
+    @Test
+    public void notStickyNeverIntercepts() {
+        mStickyLayout.setSticky(false);
+        intercept(MotionEvent.ACTION_DOWN, START_Y);
+        assertFalse(intercept(MotionEvent.ACTION_MOVE, START_Y - mTouchSlop * 2));
+    }
+
+    /**
+     * 向上拖动超过header高度的一半后抬手，header进入收缩状态
+     */
+    private void collapse() {
+        View header = mStickyLayout.findViewById(R.id.header);
+        int headerHeight = header.getHeight();
+        touch(MotionEvent.ACTION_DOWN, START_Y);
+        touch(MotionEvent.ACTION_MOVE, START_Y - headerHeight);
+        touch(MotionEvent.ACTION_UP, START_Y - headerHeight);
+        awaitSmoothSetHeaderHeight();
+        assertEquals(0, header.getLayoutParams().height);
+    }
+
+    /**
+     * 抬手后StickyLayout在后台线程中逐帧post新的高度，等线程结束并执行完post的任务，
+     * 否则线程会在测试结束、Robolectric环境被清理之后继续post
+     */
+    private static void awaitSmoothSetHeaderHeight() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("Thread#smoothSetHeaderHeight".equals(thread.getName())) {
+                try {
+                    thread.join(5000);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                assertFalse(thread.isAlive());
+            }
+        }
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private boolean intercept(int action, int y) {
+        MotionEvent event = obtain(action, y);
+        boolean intercepted = mStickyLayout.onInterceptTouchEvent(event);
+        event.recycle();
+        return intercepted;
+    }
+
+    private void touch(int action, int y) {
+        MotionEvent event = obtain(action, y);
+        mStickyLayout.onTouchEvent(event);
+        event.recycle();
+    }
+
+    private static MotionEvent obtain(int action, int y) {
+        long time = SystemClock.uptimeMillis();
+        return MotionEvent.obtain(time, time, action, 100, y, 0);
+    }
+}
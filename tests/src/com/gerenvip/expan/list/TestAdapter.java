@@ -0,0 +1,110 @@
+package com.gerenvip.expan.list;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseExpandableListAdapter;
+import android.widget.TextView;
+
+/**
+ * 测试用的adapter，分组条目和子条目都是固定高度，便于计算每个条目的位置
+ */
+class TestAdapter extends BaseExpandableListAdapter {
+
+    static final int GROUP_HEIGHT = 50;
+    static final int CHILD_HEIGHT = 60;
+
+    private final Context mContext;
+    private int mGroupCount;
+    //getGroupId返回groupPosition + mGroupIdOffset，模拟前面的分组被删除
+    private int mGroupIdOffset;
+    private final int mChildrenCount;
+    //getGroupView和getChildView被调用(绑定条目)的总次数
+    int bindCount;
+
+    TestAdapter(Context context, int groupCount, int childrenCount) {
+        mContext = context;
+        mGroupCount = groupCount;
+        mChildrenCount = childrenCount;
+    }
+
+    void setGroupCount(int groupCount) {
+        mGroupCount = groupCount;
+    }
+
+    void setGroupIdOffset(int offset) {
+        mGroupIdOffset = offset;
+    }
+
+    /**
+     * @param groupPosition
+     * @return 所有分组都展开时，该组的group条目在列表中的位置
+     */
+    int getFlatGroupPosition(int groupPosition) {
+        return groupPosition * (mChildrenCount + 1);
+    }
+
+    @Override
+    public int getGroupCount() {
+        return mGroupCount;
+    }
+
+    @Override
+    public int getChildrenCount(int groupPosition) {
+        return mChildrenCount;
+    }
+
+    @Override
+    public Object getGroup(int groupPosition) {
+        return "group " + groupPosition;
+    }
+
+    @Override
+    public Object getChild(int groupPosition, int childPosition) {
+        return "child " + groupPosition + "-" + childPosition;
+    }
+
+    @Override
+    public long getGroupId(int groupPosition) {
+        return groupPosition + mGroupIdOffset;
+    }
+
+    @Override
+    public long getChildId(int groupPosition, int childPosition) {
+        return childPosition;
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+        return bind(convertView, GROUP_HEIGHT, getGroup(groupPosition));
+    }
+
+    @Override
+    public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+        return bind(convertView, CHILD_HEIGHT, getChild(groupPosition, childPosition));
+    }
+
+    @Override
+    public boolean isChildSelectable(int groupPosition, int childPosition) {
+        return true;
+    }
+
+    private View bind(View convertView, int height, Object text) {
+        bindCount++;
+        TextView view = (TextView) convertView;
+        if (view == null) {
+            view = new TextView(mContext);
+            view.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, height));
+            //多列模式下格子的LayoutParams会被替换为wrap_content，保持同样的高度
+            view.setMinHeight(height);
+        }
+        view.setText(String.valueOf(text));
+        return view;
+    }
+}